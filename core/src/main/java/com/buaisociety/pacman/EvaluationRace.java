@@ -0,0 +1,215 @@
+package com.buaisociety.pacman;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spends the evaluation time of a generation on the clients that compete for
+ * selection, with successive halving ("racing").
+ *
+ * <p>All clients start racing. Once the generation has run for
+ * {@link Config#firstBudget} ticks, the racing clients are ranked by their
+ * {@link PacmanNeatClient#getEstimatedFitness() estimated fitness}, and only
+ * the best {@link Config#keepFraction} keep playing. A client is also kept if
+ * its estimate plus {@link Config#confidence} standard errors still reaches
+ * the cut, so a client is not dropped for 1 unlucky game. The next cut comes
+ * {@link Config#budgetGrowth} times as many ticks later, and so on, until only
+ * {@link Config#minClients} are left.
+ *
+ * <p>An eliminated client stops playing, and its games are marked complete.
+ * When the generation ends, {@link #finish()} gives it an extrapolated
+ * fitness: its estimate when it was cut, plus the median amount the clients
+ * that survived that cut gained afterwards. The gain is limited so that no
+ * eliminated client ends up above the worst survivor of its cut, and since
+ * every client eliminated at a cut gets the same gain, their order is kept.
+ * Estimates use the same {@link FitnessAggregate} as the final fitness, so a
+ * gain never mixes 2 different statistics.
+ */
+public class EvaluationRace {
+
+    private final @NotNull Config config;
+    private final @NotNull List<PacmanNeatClient> racing = new ArrayList<>();
+    private final @NotNull List<Cut> cuts = new ArrayList<>();
+    private long ticks;
+    private long nextCut;
+    private long budget;
+
+    public EvaluationRace() {
+        this(new Config());
+    }
+
+    public EvaluationRace(@NotNull Config config) {
+        if (config.keepFraction <= 0 || config.keepFraction >= 1)
+            throw new IllegalArgumentException("keepFraction must be between 0 and 1, got " + config.keepFraction);
+        if (config.firstBudget < 1)
+            throw new IllegalArgumentException("firstBudget must be at least 1, got " + config.firstBudget);
+        if (config.budgetGrowth < 1)
+            throw new IllegalArgumentException("budgetGrowth must be at least 1, got " + config.budgetGrowth);
+
+        this.config = config;
+    }
+
+    /**
+     * Starts racing a new generation.
+     *
+     * @param clients every client of the generation
+     */
+    public void start(@NotNull List<PacmanNeatClient> clients) {
+        racing.clear();
+        racing.addAll(clients);
+        cuts.clear();
+        ticks = 0;
+        budget = config.firstBudget;
+        nextCut = budget;
+    }
+
+    /**
+     * Returns the clients that are still playing.
+     *
+     * @return the racing clients
+     */
+    public @NotNull List<PacmanNeatClient> getRacing() {
+        return racing;
+    }
+
+    /**
+     * Returns the number of ticks until the next cut is due. Step the games by
+     * at most this many ticks, so that the cut is made on time.
+     *
+     * @return the ticks until the next cut, or {@link Long#MAX_VALUE} if no
+     *         more cuts will be made
+     */
+    public long getTicksUntilCut() {
+        if (racing.size() <= config.minClients)
+            return Long.MAX_VALUE;
+        return Math.max(1, nextCut - ticks);
+    }
+
+    /**
+     * Counts the ticks the games were just stepped by, and makes a cut if it
+     * is due.
+     *
+     * @param ticks the number of ticks the games were stepped by
+     * @return true if clients were eliminated, so the games to step changed
+     */
+    public boolean advance(long ticks) {
+        this.ticks += ticks;
+        if (this.ticks < nextCut || racing.size() <= config.minClients)
+            return false;
+
+        budget = (long) Math.ceil(budget * config.budgetGrowth);
+        nextCut = this.ticks + budget;
+        return cut();
+    }
+
+    private boolean cut() {
+        int keep = Math.max(config.minClients, (int) Math.ceil(racing.size() * config.keepFraction));
+        int eliminate = racing.size() - keep;
+        if (eliminate <= 0)
+            return false;
+
+        // The cut is the estimate of the worst client that is kept
+        Map<PacmanNeatClient, Double> estimates = new HashMap<>();
+        for (PacmanNeatClient client : racing) {
+            estimates.put(client, client.getEstimatedFitness());
+        }
+        List<PacmanNeatClient> ranked = new ArrayList<>(racing);
+        ranked.sort(Comparator.comparingDouble(estimates::get).reversed());
+        double threshold = estimates.get(ranked.get(keep - 1));
+
+        Cut cut = new Cut(threshold);
+        for (int i = ranked.size() - 1; i >= 0 && cut.eliminated.size() < eliminate; i--) {
+            PacmanNeatClient client = ranked.get(i);
+            double estimate = estimates.get(client);
+            if (estimate + config.confidence * client.getFitnessStandardError() >= threshold)
+                continue;
+
+            // Clients whose games are complete already cost nothing to keep
+            if (client.getGameCompleteFuture().isDone())
+                continue;
+
+            cut.eliminated.add(client);
+            cut.eliminatedEstimates.add(estimate);
+            client.getGameCompleteFuture().complete(null);
+        }
+        if (cut.eliminated.isEmpty())
+            return false;
+
+        racing.removeAll(cut.eliminated);
+        for (PacmanNeatClient client : racing) {
+            if (estimates.get(client) < threshold)
+                continue;  // only kept for its confidence, or because it is done
+            cut.survivors.add(client);
+            cut.survivorEstimates.add(estimates.get(client));
+        }
+        cuts.add(cut);
+        return true;
+    }
+
+    /**
+     * Gives every eliminated client its extrapolated fitness. Call this at
+     * the end of the generation, after the fitness of the clients that kept
+     * racing has been set.
+     */
+    public void finish() {
+        // The latest cut first, since its eliminated clients are survivors
+        // of the earlier cuts
+        for (int i = cuts.size() - 1; i >= 0; i--) {
+            Cut cut = cuts.get(i);
+            double[] gains = new double[cut.survivors.size()];
+            double worstFitness = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < gains.length; j++) {
+                double fitness = cut.survivors.get(j).getClient().getScore();
+                gains[j] = fitness - cut.survivorEstimates.get(j);
+                worstFitness = Math.min(worstFitness, fitness);
+            }
+
+            // Every eliminated estimate is below the threshold, so this gain
+            // keeps them below the worst survivor
+            double gain = Math.min(median(gains), worstFitness - cut.threshold);
+            for (int j = 0; j < cut.eliminated.size(); j++) {
+                cut.eliminated.get(j).getClient().setScore((float) (cut.eliminatedEstimates.get(j) + gain));
+            }
+        }
+    }
+
+    private static double median(@NotNull double[] values) {
+        if (values.length == 0)
+            return 0.0;
+
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2.0;
+    }
+
+    /**
+     * The clients eliminated at 1 cut, and the ones that made it, with their
+     * estimates at the time.
+     */
+    private static final class Cut {
+        private final double threshold;
+        private final @NotNull List<PacmanNeatClient> eliminated = new ArrayList<>();
+        private final @NotNull List<Double> eliminatedEstimates = new ArrayList<>();
+        private final @NotNull List<PacmanNeatClient> survivors = new ArrayList<>();
+        private final @NotNull List<Double> survivorEstimates = new ArrayList<>();
+
+        private Cut(double threshold) {
+            this.threshold = threshold;
+        }
+    }
+
+    public static class Config {
+        public long firstBudget = 60 * 30;  // ticks before the first cut
+        public double budgetGrowth = 2.0;  // each round is this many times longer than the previous
+        public double keepFraction = 0.5;  // of the racing clients, at each cut
+        public int minClients = 25;  // stop cutting once this many are left
+        public double confidence = 1.0;  // standard errors a client may be below the cut and still be kept
+    }
+}
@@ -0,0 +1,55 @@
+package com.buaisociety.pacman;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * How the fitness of a client's episodes is combined into 1 fitness.
+ */
+public enum FitnessAggregate {
+
+    /**
+     * The mean of every episode.
+     */
+    MEAN,
+
+    /**
+     * The median episode, which ignores a few lucky or unlucky episodes.
+     */
+    MEDIAN,
+
+    /**
+     * The mean of the middle half of the episodes (the best and worst
+     * quarter are left out). With fewer than 4 episodes, this is the mean.
+     */
+    TRIMMED_MEAN;
+
+    /**
+     * Combines the given episodes.
+     *
+     * @param fitness the fitness of each episode
+     * @return the combined fitness, or 0 if there are no episodes
+     */
+    public double apply(@NotNull double[] fitness) {
+        if (fitness.length == 0)
+            return 0.0;
+
+        double[] sorted = fitness.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return switch (this) {
+            case MEAN -> mean(sorted, 0, sorted.length);
+            case MEDIAN -> sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2.0;
+            case TRIMMED_MEAN -> mean(sorted, sorted.length / 4, sorted.length - sorted.length / 4);
+        };
+    }
+
+    private static double mean(@NotNull double[] values, int from, int to) {
+        double sum = 0.0;
+        for (int i = from; i < to; i++) {
+            sum += values[i];
+        }
+        return sum / (to - from);
+    }
+}
@@ -0,0 +1,192 @@
+package com.buaisociety.pacman;
+
+import com.buaisociety.pacman.entity.Direction;
+import com.buaisociety.pacman.entity.Entity;
+import com.buaisociety.pacman.entity.EntityType;
+import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.entity.behavior.Behavior;
+import com.buaisociety.pacman.event.EntityPreSpawnEvent;
+import com.buaisociety.pacman.maze.Maze;
+import com.buaisociety.pacman.maze.MazeTemplate;
+import com.buaisociety.pacman.util.Disposable;
+import com.buaisociety.pacman.util.EventSystem;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A private, headless copy of a game that can be stepped ahead to see what
+ * would happen, for planning behaviors like
+ * {@link com.buaisociety.pacman.entity.behavior.MctsPacmanBehavior}.
+ *
+ * <p>The model owns a {@link GameManager} that is never rendered and has no
+ * event listeners (other than the one giving pacman its directions), so
+ * stepping it creates no textures or particles. {@link #setRoot(GameManager)}
+ * copies the state of a real game with {@link GameManager#snapshot()}, and
+ * {@link #reset()} restores that state, so the same model (and the same maze
+ * and entities) can be reused for every simulation. The model is only
+ * rebuilt when the simulated game moves to another level.
+ *
+ * <p>The behaviors of the real game are not copied: in the model, pacman
+ * moves in the direction passed to {@link #step(Direction, int)}, and the
+ * ghosts use their default behaviors. A model is not thread-safe; use 1 model
+ * per thread.
+ */
+public final class ForwardModel implements Disposable {
+
+    private final @NotNull ControlledBehavior pacmanBehavior = new ControlledBehavior();
+    private @Nullable GameManager game;
+
+    private @NotNull byte[] root = new byte[0];
+    private int rootLevel;
+    private @Nullable MazeTemplate rootTemplate;
+    private @NotNull String levelsPreset = "levels.json";
+    private int handicap;
+    private boolean fixedPointMovement;
+
+    /**
+     * Copies the current state of the given game into this model, and makes
+     * it the state that {@link #reset()} returns to.
+     *
+     * @param source the game to copy
+     * @throws IllegalStateException if the game has not started a level
+     */
+    public void setRoot(@NotNull GameManager source) {
+        setRoot(source, source.snapshot());
+    }
+
+    /**
+     * Like {@link #setRoot(GameManager)}, with a snapshot of
+     * <code>source</code> that was already taken. This lets several models
+     * share a single snapshot.
+     *
+     * @param source   the game the snapshot was taken from
+     * @param snapshot the current snapshot of the game
+     * @throws IllegalStateException if the game has not started a level
+     */
+    public void setRoot(@NotNull GameManager source, @NotNull byte[] snapshot) {
+        Maze maze = source.getCurrentMaze();
+        if (maze == null)
+            throw new IllegalStateException("No level has been started");
+
+        GameManager.Config config = source.getConfig();
+        this.root = snapshot;
+        this.rootLevel = source.getLevel();
+        this.rootTemplate = maze.getTemplate();
+        this.levelsPreset = config.levelsPreset;
+        this.handicap = config.handicap;
+        this.fixedPointMovement = config.fixedPointMovement;
+        reset();
+    }
+
+    /**
+     * Restores the state given to {@link #setRoot(GameManager)}, undoing every
+     * {@link #step(Direction, int)} since.
+     *
+     * @throws IllegalStateException if no root has been set
+     */
+    public void reset() {
+        if (rootTemplate == null)
+            throw new IllegalStateException("No root has been set");
+
+        GameManager game = this.game;
+        if (game == null || game.getLevel() != rootLevel || game.getCurrentMaze() == null || game.getCurrentMaze().getTemplate() != rootTemplate) {
+            if (game != null)
+                game.dispose();
+            game = this.game = createGame();
+        }
+
+        game.restore(root);
+    }
+
+    private @NotNull GameManager createGame() {
+        EventSystem events = new EventSystem();
+        events.registerListener(EntityPreSpawnEvent.class, event -> {
+            if (event.getEntityType() == EntityType.PACMAN)
+                ((PacmanEntity.Config) event.getConfig()).behavior = pacmanBehavior;
+        });
+
+        GameManager.Config config = new GameManager.Config();
+        config.levelsPreset = levelsPreset;
+        config.handicap = handicap;
+        config.fixedPointMovement = fixedPointMovement;
+        config.startLevel = rootLevel - 1;
+        config.seed = 0;  // replaced by the snapshot
+
+        GameManager game = new GameManager(events, config);
+        game.nextLevel();
+        return game;
+    }
+
+    /**
+     * Simulates up to <code>ticks</code> ticks, with pacman trying to move in
+     * the given direction. Stops early when pacman loses a life, the level
+     * changes, or the game ends.
+     *
+     * @param direction the direction pacman tries to move in
+     * @param ticks     the maximum number of ticks to simulate
+     * @return the number of ticks that were simulated
+     */
+    public int step(@NotNull Direction direction, int ticks) {
+        GameManager game = getGame();
+        pacmanBehavior.direction = direction;
+
+        int level = game.getLevel();
+        int lives = game.getExtraLives();
+        for (int i = 0; i < ticks; i++) {
+            if (game.isGameOver())
+                return i;
+
+            game.update();
+            game.postUpdate();
+            if (game.getLevel() != level || game.getExtraLives() != lives || game.isGameOver())
+                return i + 1;
+        }
+        return ticks;
+    }
+
+    /**
+     * Returns the simulated game. Its state is only meaningful between
+     * {@link #reset()} and the next {@link #setRoot(GameManager)}.
+     *
+     * @return the simulated game
+     * @throws IllegalStateException if no root has been set
+     */
+    public @NotNull GameManager getGame() {
+        if (game == null)
+            throw new IllegalStateException("No root has been set");
+        return game;
+    }
+
+    /**
+     * Returns the simulated pacman.
+     *
+     * @return the simulated pacman
+     * @throws IllegalStateException if no root has been set, or the maze has
+     *                               no pacman
+     */
+    public @NotNull PacmanEntity getPacman() {
+        Maze maze = getGame().getCurrentMaze();
+        if (maze == null)
+            throw new IllegalStateException("No level has been started");
+        return maze.getPacman();
+    }
+
+    @Override
+    public void dispose() {
+        if (game != null)
+            game.dispose();
+        game = null;
+    }
+
+    /**
+     * Moves pacman in whichever direction the model was last stepped with.
+     */
+    private static final class ControlledBehavior implements Behavior {
+        private @NotNull Direction direction = Direction.UP;
+
+        @Override
+        public @NotNull Direction getDirection(@NotNull Entity entity) {
+            return direction;
+        }
+    }
+}
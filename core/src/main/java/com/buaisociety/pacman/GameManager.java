@@ -3,15 +3,11 @@ package com.buaisociety.pacman;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.buaisociety.pacman.entity.Direction;
 import com.buaisociety.pacman.entity.EntityType;
 import com.buaisociety.pacman.entity.GhostEntity;
 import com.buaisociety.pacman.entity.PacmanEntity;
-import com.buaisociety.pacman.entity.behavior.Behavior;
 import com.buaisociety.pacman.entity.behavior.JoystickInputBehavior;
 import com.buaisociety.pacman.event.CreateMazeEvent;
 import com.buaisociety.pacman.event.EntityPreSpawnEvent;
@@ -20,52 +16,67 @@ import com.buaisociety.pacman.event.GameEndEvent;
 import com.buaisociety.pacman.event.LoseLifeEvent;
 import com.buaisociety.pacman.event.NextLevelEvent;
 import com.buaisociety.pacman.maze.Maze;
+import com.buaisociety.pacman.maze.MazeTemplate;
 import com.buaisociety.pacman.maze.TerminalReason;
-import com.buaisociety.pacman.maze.TileState;
 import com.buaisociety.pacman.sprite.GrayscaleSpriteSheet;
 import com.buaisociety.pacman.sprite.TextSpriteSheet;
 import com.buaisociety.pacman.util.Disposable;
 import com.buaisociety.pacman.util.EventSystem;
+import com.buaisociety.pacman.util.GameRandom;
 import com.buaisociety.pacman.util.Joystick;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2i;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.Locale;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Handles moving between levels, and setting up the maze for each level.
+ *
+ * <p>The simulation itself never touches OpenGL. Sprites are only created the
+ * first time a game is {@link #render(SpriteBatch) rendered}, so games that are
+ * never displayed (or games running without a libGDX backend at all) run as a
+ * pure simulation.
  */
 public class GameManager implements Disposable {
 
+    private static final int SNAPSHOT_VERSION = 1;
+
     private final @NotNull EventSystem events;
     private final @NotNull Config config;
 
     private int level;
+    private @NotNull LevelSpec levelSpec;
+    private final @NotNull GameRandom random;
+    private final @NotNull GameRandom scenarioRandom;  // reseeded for every level, see getScenarioRandom()
+    private final long scenarioSeed;  // the scenario stream of a level starts at this seed plus the level
     private int extraLives;
     private int score;
     private @Nullable Maze currentMaze;
-    private @NotNull TextSpriteSheet textSprite;
-    private @NotNull GrayscaleSpriteSheet pacmanSprite;
+    private @Nullable ByteBuffer snapshotBuffer;  // reused by snapshot(), grows as needed
+    private @Nullable TextSpriteSheet textSprite;
+    private boolean textSpriteColored;  // supplied sprites are colored when first used, like created ones
+    private @Nullable GrayscaleSpriteSheet pacmanSprite;
 
     public GameManager(@NotNull EventSystem events, @NotNull Config config) {
         this.events = events;
         this.config = config;
 
         this.level = config.startLevel;
+        this.levelSpec = LevelSpec.create(level, config.handicap);
+        this.random = new GameRandom(config.seed);
+        this.scenarioSeed = new GameRandom(config.seed).split().getState();
+        this.scenarioRandom = new GameRandom(scenarioSeed);
         this.extraLives = config.startLives;
         this.score = config.startScore;
         this.currentMaze = null;
 
         this.textSprite = config.textSprite;
-        textSprite.getSpriteSheet().setColors(Color.CLEAR, Color.WHITE);
         this.pacmanSprite = config.pacmanSprite;
-        pacmanSprite.setColors(Color.CLEAR, Color.YELLOW);
     }
 
     /**
@@ -97,6 +108,40 @@ public class GameManager implements Disposable {
         return level;
     }
 
+    /**
+     * Returns the random number generator of this game, seeded with
+     * {@link Config#seed}. All random decisions in the game should use it, so
+     * that a game can be replayed from its seed.
+     *
+     * @return the random number generator
+     */
+    public @NotNull GameRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Returns the random number generator for the scenario of the current
+     * level, meaning the random changes made to a new maze (see
+     * {@link CreateMazeEvent}). It is reseeded from {@link Config#seed} and
+     * the level whenever a level starts, so 2 games with the same seed get
+     * the same maze on every level, no matter how the previous levels were
+     * played. Decisions made while playing should use {@link #getRandom()}.
+     *
+     * @return the random number generator for the current scenario
+     */
+    public @NotNull GameRandom getScenarioRandom() {
+        return scenarioRandom;
+    }
+
+    /**
+     * Returns the rules of the current level, see {@link LevelSpec}.
+     *
+     * @return the rules of the current level
+     */
+    public @NotNull LevelSpec getLevelSpec() {
+        return levelSpec;
+    }
+
     /**
      * Returns the current score.
      *
@@ -106,7 +151,21 @@ public class GameManager implements Disposable {
         return score;
     }
 
+    /**
+     * Returns the sprite sheet used to render text, creating it if needed.
+     *
+     * <p>This method creates textures, so it may only be called from the
+     * render thread.
+     *
+     * @return the text sprite sheet
+     */
     public @NotNull TextSpriteSheet getTextSprite() {
+        if (textSprite == null)
+            textSprite = new TextSpriteSheet(new GrayscaleSpriteSheet(new Texture("sprites/text-sprite.png"), 8));
+        if (!textSpriteColored) {
+            textSprite.getSpriteSheet().setColors(Color.CLEAR, Color.WHITE);
+            textSpriteColored = true;
+        }
         return textSprite;
     }
 
@@ -163,7 +222,7 @@ public class GameManager implements Disposable {
             return;
         if (extraLives < 0) {
             // Let people press any button to restart the game
-            if (Gdx.input.isKeyJustPressed(Input.Keys.ANY_KEY)) {
+            if (Gdx.input != null && Gdx.input.isKeyJustPressed(Input.Keys.ANY_KEY)) {
                 level = 0;
                 extraLives = config.startLives;
                 score = config.startScore;
@@ -199,6 +258,135 @@ public class GameManager implements Disposable {
         }
     }
 
+    /**
+     * Captures the complete state of the game (score, lives, random state,
+     * tiles, entities and timers) into a compact array, which can later be
+     * passed to {@link #restore(byte[])}.
+     *
+     * <p>The behaviors of the entities, the event listeners and the particles
+     * are not part of the state.
+     *
+     * @return the snapshot
+     * @throws IllegalStateException if no level has been started
+     */
+    public @NotNull byte[] snapshot() {
+        while (true) {
+            ByteBuffer buffer = snapshotBuffer;
+            if (buffer == null)
+                buffer = snapshotBuffer = ByteBuffer.allocate(4096);
+
+            buffer.clear();
+            try {
+                snapshot(buffer);
+            } catch (BufferOverflowException e) {
+                snapshotBuffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                continue;
+            }
+
+            byte[] snapshot = new byte[buffer.position()];
+            buffer.flip().get(snapshot);
+            return snapshot;
+        }
+    }
+
+    /**
+     * Writes the state of the game to the buffer at its current position, like
+     * {@link #snapshot()}. The buffer may be reused between snapshots, or be
+     * a direct (off-heap) buffer.
+     *
+     * @param buffer the buffer to write to
+     * @throws IllegalStateException if no level has been started
+     * @throws BufferOverflowException if the buffer is too small
+     */
+    public void snapshot(@NotNull ByteBuffer buffer) {
+        if (currentMaze == null)
+            throw new IllegalStateException("No level has been started");
+
+        buffer.putInt(SNAPSHOT_VERSION);
+        buffer.putInt(level);
+        buffer.putInt(currentMaze.getTemplate().getName().hashCode());
+        buffer.putInt(extraLives);
+        buffer.putInt(score);
+        buffer.putLong(random.getState());
+        currentMaze.saveState(buffer);
+    }
+
+    /**
+     * Restores a snapshot taken by {@link #snapshot()} into this game. The
+     * snapshot must have been taken on the current level of this game (or of
+     * a game with the same configuration): restoring does not move between
+     * levels or fire any events.
+     *
+     * @param snapshot the snapshot to restore
+     * @throws IllegalStateException if the snapshot does not match this game
+     */
+    public void restore(@NotNull byte[] snapshot) {
+        restore(ByteBuffer.wrap(snapshot));
+    }
+
+    /**
+     * Restores a snapshot written by {@link #snapshot(ByteBuffer)}, reading
+     * from the current position of the buffer. See {@link #restore(byte[])}.
+     *
+     * @param buffer the buffer to read from
+     * @throws IllegalStateException if the snapshot does not match this game
+     */
+    public void restore(@NotNull ByteBuffer buffer) {
+        if (currentMaze == null)
+            throw new IllegalStateException("No level has been started");
+
+        try {
+            int version = buffer.getInt();
+            if (version != SNAPSHOT_VERSION)
+                throw new IllegalStateException("Unsupported snapshot version " + version);
+            int snapshotLevel = buffer.getInt();
+            int templateHash = buffer.getInt();
+            if (snapshotLevel != level || templateHash != currentMaze.getTemplate().getName().hashCode())
+                throw new IllegalStateException("Snapshot is from level " + snapshotLevel + ", but the game is on level " + level + " (" + currentMaze.getTemplate().getName() + ")");
+
+            extraLives = buffer.getInt();
+            score = buffer.getInt();
+            random.setState(buffer.getLong());
+            currentMaze.loadState(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalStateException("Snapshot is truncated", e);
+        }
+    }
+
+    /**
+     * Returns true if pacman has no lives remaining, e.g. the game is over.
+     *
+     * @return true if the game is over
+     */
+    public boolean isGameOver() {
+        return extraLives < 0;
+    }
+
+    /**
+     * Advances the game by up to <code>maxTicks</code> ticks, calling
+     * {@link #update()} and {@link #postUpdate()} for each tick.
+     *
+     * <p>Stepping stops early when the level changes or the game ends, so the
+     * caller can react to those (e.g. rendering the new maze, or evolving the
+     * neural networks) before any more ticks are simulated.
+     *
+     * @param maxTicks the maximum number of ticks to simulate
+     * @return the number of ticks that were simulated
+     */
+    public int step(int maxTicks) {
+        int startLevel = level;
+        for (int i = 0; i < maxTicks; i++) {
+            if (currentMaze == null || isGameOver())
+                return i;
+
+            update();
+            postUpdate();
+            if (level != startLevel || isGameOver())
+                return i + 1;
+        }
+        return maxTicks;
+    }
+
     /**
      * Renders the current maze, and the high score.
      *
@@ -208,7 +396,12 @@ public class GameManager implements Disposable {
         if (currentMaze == null)
             return;
 
+        if (pacmanSprite == null)
+            pacmanSprite = new GrayscaleSpriteSheet(new Texture("sprites/pacman-sprite.png"), 20);
+        pacmanSprite.setColors(Color.CLEAR, Color.YELLOW);
+
         currentMaze.render(batch);
+        TextSpriteSheet textSprite = getTextSprite();
         textSprite.render(batch, Maze.TILE_SIZE * 9, Maze.TILE_SIZE * 35, "HIGH SCORE");
 
         // Arcade Pacman only shows scores once Pacman has collected a dot
@@ -235,18 +428,12 @@ public class GameManager implements Disposable {
      */
     public void nextLevel() {
         level++;
+        levelSpec = LevelSpec.create(level, config.handicap);
+        scenarioRandom.setState(scenarioSeed + level);
 
-        // Parse levels.json, and determine the name of the next level
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode levelsJson;
-        try {
-            levelsJson = mapper.readTree(Gdx.files.internal(config.levelsPreset).readString());
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to load " + config.levelsPreset, e);
-        }
-
-        ArrayNode allLevels = (ArrayNode) levelsJson.get("levels");
-        String nextLevelName = allLevels.get(Math.min(level, allLevels.size()) - 1).asText();
+        // Determine the name of the next level from the (cached) levels preset
+        List<String> allLevels = MazeTemplate.getLevels(config.levelsPreset);
+        String nextLevelName = allLevels.get(Math.min(level, allLevels.size()) - 1);
 
         // Fire an event to allow modification of the next level name
         NextLevelEvent event = new NextLevelEvent(nextLevelName);
@@ -254,92 +441,11 @@ public class GameManager implements Disposable {
         nextLevelName = event.getNextLevel();
 
         // Now that we have the next level name, we should get the maze for it
-        JsonNode mazeConfigJson;
-        try {
-            mazeConfigJson = mapper.readTree(Gdx.files.internal("mazes/" + nextLevelName + "/config.json").readString());
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to load maze config for " + nextLevelName, e);
-        }
-
-        Pixmap pixmap = new Pixmap(Gdx.files.internal("mazes/" + nextLevelName + "/maze.png"));
-        TileState[][] tiles = new TileState[pixmap.getHeight()][pixmap.getWidth()];
-        for (int y = 0; y < pixmap.getHeight(); y++) {
-            for (int x = 0; x < pixmap.getWidth(); x++) {
-                int pixel = pixmap.getPixel(x, y);
-                Color color = new Color(pixel);
-                int red = (int) (color.r * 255);  // grayscale, so r=g=b
-
-                // This is a 4-bit grayscale image, so we can only have 16 colors
-                int normalized = red / (256 / (TileState.values().length - 1));
-                tiles[pixmap.getHeight() - 1 - y][x] = switch (normalized) {
-                    case 0 -> TileState.SPACE;
-                    case 1 -> TileState.TUNNEL;
-                    case 2 -> TileState.PELLET;
-                    case 3 -> TileState.POWER_PELLET;
-                    case 4 -> TileState.GHOST_PEN;
-                    case 5 -> TileState.WALL;
-                    default -> throw new IllegalStateException("Unexpected value: " + normalized);
-                };
-            }
-        }
-
-        Sprite levelSprite = new Sprite(new Texture("mazes/" + nextLevelName + "/render.png"));
-
-        Vector2i fruitSpawnPixel = parseVector(mazeConfigJson.get("fruit_spawn_position"));
-        Maze maze = new Maze(this, levelSprite, tiles, fruitSpawnPixel);
-        Vector2i pacmanSpawnPixel = parseVector(mazeConfigJson.get("pacman_spawn_position"));
-        Vector2i ghostRevivePixel = parseVector(mazeConfigJson.get("ghost_revive_position"));
-
-        for (JsonNode ghostNode : mazeConfigJson.get("ghosts")) {
-            String ghostName = ghostNode.get("name").asText();  // expect a value like 'ghosts/inky.json'
-            Vector2i ghostSpawnPixel = parseVector(ghostNode.get("spawn_position"));
-            Direction ghostSpawnDirection = Direction.valueOf(ghostNode.get("spawn_direction").asText().toUpperCase(Locale.ROOT));
-            boolean isReleased = ghostNode.get("is_released").asBoolean();
-            Vector2i ghostScatterTile = parseVector(ghostNode.get("scatter_tile"));
+        MazeTemplate template = MazeTemplate.get(nextLevelName);
+        Maze maze = new Maze(this, template);
 
-            JsonNode ghostJson;
-            try {
-                ghostJson = mapper.readTree(Gdx.files.internal(ghostName).readString());
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to load ghost config for " + ghostName, e);
-            }
-
-            String behaviorClassPath = ghostJson.get("chase_behavior").asText();
-            boolean isElroy = ghostJson.get("is_elroy").asBoolean();
-            Behavior behavior;
-            try {
-                behavior = (Behavior) Class.forName(behaviorClassPath).getConstructor().newInstance();
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to load behavior for " + ghostName, e);
-            }
-
-            JsonNode colorJson = ghostJson.get("colors");
-            List<Color> aliveColors = StreamSupport.stream(colorJson.get("alive").spliterator(), false)
-                .map(GameManager::parseColor)
-                .toList();
-            List<Color> frightenedColors = StreamSupport.stream(colorJson.get("frightened").spliterator(), false)
-                .map(GameManager::parseColor)
-                .toList();
-            List<Color> flashColors = StreamSupport.stream(colorJson.get("flash").spliterator(), false)
-                .map(GameManager::parseColor)
-                .toList();
-            List<Color> eatenColors = StreamSupport.stream(colorJson.get("eaten").spliterator(), false)
-                .map(GameManager::parseColor)
-                .toList();
-
-            GhostEntity.Config ghostConfig = new GhostEntity.Config();
-            ghostConfig.isElroy = isElroy;
-            ghostConfig.spriteSheet = new GrayscaleSpriteSheet(new Texture("sprites/ghost-sprite.png"), 20);
-            ghostConfig.chase = behavior;
-            ghostConfig.scatterTile = ghostScatterTile;
-            ghostConfig.spawnPixel = ghostSpawnPixel;
-            ghostConfig.spawnDirection = ghostSpawnDirection;
-            ghostConfig.spawnReleased = isReleased;
-            ghostConfig.reviveTile = ghostRevivePixel;
-            ghostConfig.colorsAlive = aliveColors.toArray(new Color[0]);
-            ghostConfig.colorsFrightened = frightenedColors.toArray(new Color[0]);
-            ghostConfig.colorsFlash = flashColors.toArray(new Color[0]);
-            ghostConfig.colorsEaten = eatenColors.toArray(new Color[0]);
+        for (MazeTemplate.GhostSpec ghostSpec : template.getGhosts()) {
+            GhostEntity.Config ghostConfig = ghostSpec.createConfig(template.getGhostRevivePixel());
 
             // Fire an event to allow modification of the ghost config
             EntityPreSpawnEvent preSpawnEvent = new EntityPreSpawnEvent(maze, EntityType.GHOST, ghostConfig);
@@ -356,15 +462,15 @@ public class GameManager implements Disposable {
             if (spawnEvent.isCancelled())
                 continue;
 
-            maze.getEntities().add(spawnEvent.getEntity());
+            maze.addEntity(spawnEvent.getEntity());
         }
 
         Joystick joystick = new Joystick();
-        Gdx.input.setInputProcessor(joystick);
+        if (Gdx.input != null)
+            Gdx.input.setInputProcessor(joystick);
         PacmanEntity.Config pacmanConfig = new PacmanEntity.Config();
         pacmanConfig.behavior = new JoystickInputBehavior(joystick);
-        pacmanConfig.spawnPixel = pacmanSpawnPixel;
-        pacmanConfig.spriteSheet = new GrayscaleSpriteSheet(new Texture("sprites/pacman-sprite.png"), 20);
+        pacmanConfig.spawnPixel = new Vector2i(template.getPacmanSpawnPixel());
 
         // Fire an event to allow modification of the pacman config
         EntityPreSpawnEvent preSpawnEvent = new EntityPreSpawnEvent(maze, EntityType.PACMAN, pacmanConfig);
@@ -381,7 +487,7 @@ public class GameManager implements Disposable {
         if (spawnEvent.isCancelled())
             return;
 
-        maze.getEntities().add(spawnEvent.getEntity());
+        maze.addEntity(spawnEvent.getEntity());
 
         CreateMazeEvent createMazeEvent = new CreateMazeEvent(maze);
         events.fireEvent(createMazeEvent);
@@ -395,32 +501,22 @@ public class GameManager implements Disposable {
     public void dispose() {
         if (currentMaze != null)
             currentMaze.dispose();
-        textSprite.dispose();
-        pacmanSprite.dispose();
+        if (textSprite != null)
+            textSprite.dispose();
+        if (pacmanSprite != null)
+            pacmanSprite.dispose();
     }
 
-    private static @NotNull Color parseColor(@NotNull JsonNode node) {
-        return new Color(
-            (float) node.get("r").asDouble(),
-            (float) node.get("g").asDouble(),
-            (float) node.get("b").asDouble(),
-            (float) node.get("a").asDouble()
-        );
-    }
-
-    private static @NotNull Vector2i parseVector(@NotNull JsonNode node) {
-        return new Vector2i(node.get("x").asInt(), node.get("y").asInt());
-    }
-
-
     public static class Config {
         public int id = 0;
-        public @NotNull TextSpriteSheet textSprite = new TextSpriteSheet(new GrayscaleSpriteSheet(new Texture("sprites/text-sprite.png"), 8));
-        public @NotNull GrayscaleSpriteSheet pacmanSprite = new GrayscaleSpriteSheet(new Texture("sprites/pacman-sprite.png"), 20);
+        public @Nullable TextSpriteSheet textSprite = null;  // null to create when first rendered
+        public @Nullable GrayscaleSpriteSheet pacmanSprite = null;  // null to create when first rendered
         public String levelsPreset = "levels.json";
         public int startLevel = 0;  // when nextLevel() is called for the first time, this gets incremented to 1
         public int startLives = 2;
         public int startScore = 0;
         public int handicap = 0;  // Delays the level speed changes by this many levels
+        public boolean fixedPointMovement = false;  // Moves entities in integer sub-pixel steps, see Entity#SUBPIXELS
+        public long seed = ThreadLocalRandom.current().nextLong();  // Seeds every random decision in the game
     }
 }
@@ -0,0 +1,264 @@
+package com.buaisociety.pacman;
+
+import com.buaisociety.pacman.entity.Entity;
+import com.buaisociety.pacman.maze.Maze;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The rules of a single level: entity speeds, timers, ghost release counts,
+ * Elroy thresholds and fruit bonuses. These constants are taken straight out
+ * of the Pacman game.
+ *
+ * <p>A spec is built once by {@link GameManager#nextLevel()}, so the entities
+ * only have to read fields every tick. The {@link GameManager.Config#handicap}
+ * delays the speed, fright, release and Elroy changes; the chase/scatter
+ * timings and the fruit are based on the actual level.
+ */
+public final class LevelSpec {
+
+    private static final int[] ELROY_PELLETS = {
+        20, 30, 40, 40, 40, 50, 50, 50, 60, 60, 60, 80, 80, 80, 100, 100, 100, 100, 120, 120, 120
+    };
+
+    private final int level;
+    private final int handicappedLevel;
+
+    private final double pacmanSpeed;
+    private final double pacmanFrightenedSpeed;
+    private final double ghostSpeed;
+    private final double ghostTunnelSpeed;
+    private final double ghostFrightenedSpeed;
+    private final double ghostEatenSpeed;
+    private final double elroy1Speed;
+    private final double elroy2Speed;
+    private final int elroy1Pellets;
+    private final int elroy2Pellets;
+    private final int frightenedTicks;
+    private final @NotNull int[] releaseBounds;
+    private final @NotNull int[] chaseScatterTicks;
+    private final int fruitScore;
+    private final int fruitSpriteIndex;
+    private final int fruitBonusSpriteIndex;
+
+    private LevelSpec(int level, int handicap) {
+        this.level = level;
+
+        // Allow a handicap to delay the speed changes per-level
+        // makes the game easier
+        int h = Math.max(1, level - handicap);
+        this.handicappedLevel = h;
+
+        this.pacmanSpeed = Entity.BASE_SPEED * (h >= 21 ? 0.90 : h >= 5 ? 1.00 : h >= 2 ? 0.90 : 0.80);
+        this.pacmanFrightenedSpeed = Entity.BASE_SPEED * (h >= 5 ? 1.00 : h >= 2 ? 0.95 : 0.90);
+
+        this.ghostEatenSpeed = Entity.BASE_SPEED * 2.0;
+        this.ghostFrightenedSpeed = Entity.BASE_SPEED * switch (h) {
+            case 1 -> 0.50;
+            case 2, 3, 4 -> 0.55;
+            default -> 0.60;
+        };
+        this.ghostTunnelSpeed = Entity.BASE_SPEED * switch (h) {
+            case 1 -> 0.40;
+            case 2, 3, 4 -> 0.45;
+            default -> 0.50;
+        };
+        this.elroy2Speed = Entity.BASE_SPEED * switch (h) {
+            case 1 -> 0.85;
+            case 2, 3, 4 -> 0.95;
+            default -> 1.05;
+        };
+        this.elroy1Speed = Entity.BASE_SPEED * switch (h) {
+            case 1 -> 0.80;
+            case 2, 3, 4 -> 0.90;
+            default -> 1.00;
+        };
+        this.ghostSpeed = Entity.BASE_SPEED * switch (h) {
+            case 1 -> 0.75;
+            case 2, 3, 4 -> 0.85;
+            default -> 0.95;
+        };
+
+        this.elroy1Pellets = ELROY_PELLETS[Math.min(h, ELROY_PELLETS.length - 1)];
+        this.elroy2Pellets = elroy1Pellets / 2;
+        this.frightenedTicks = Maze.LEVEL_FRIGHT_TIMES[Math.min(h - 1, Maze.LEVEL_FRIGHT_TIMES.length - 1)];
+
+        // The first 2 ghosts (blinky and pinky) are always released. Then each
+        // subsequent ghost has a "cost" in pellets. Any extra ghosts (past the
+        // first 4) can be released at the same cost as the final ghost.
+        this.releaseBounds = switch (h) {
+            case 1 -> new int[]{0, 0, 30, 60};
+            case 2 -> new int[]{0, 0, 0, 50};
+            default -> new int[]{0, 0, 0, 0};
+        };
+
+        this.chaseScatterTicks = Maze.LEVEL_STATES[level >= 5 ? 2 : level >= 2 ? 1 : 0];
+
+        this.fruitScore = switch (level) {
+            case 1 -> 100;
+            case 2 -> 300;
+            case 3, 4 -> 500;
+            case 5, 6 -> 700;
+            case 7, 8 -> 1000;
+            case 9, 10 -> 2000;
+            case 11, 12 -> 3000;
+            default -> 5000;
+        };
+        this.fruitSpriteIndex = switch (level) {
+            case 1 -> 0;
+            case 2 -> 1;
+            case 3, 4 -> 2;
+            case 5, 6 -> 3;
+            case 7, 8 -> 4;
+            case 9, 10 -> 5;
+            case 11, 12 -> 6;
+            default -> 7;
+        };
+        this.fruitBonusSpriteIndex = switch (fruitScore) {
+            case 100 -> 0;
+            case 300 -> 2;
+            case 500 -> 4;
+            case 700 -> 5;
+            case 1000 -> 7;
+            case 2000 -> 9;
+            case 3000 -> 10;
+            default -> 11;
+        };
+    }
+
+    /**
+     * Builds the rules of the given level.
+     *
+     * @param level    the level, 1 being the first level
+     * @param handicap the number of levels to delay the difficulty changes by
+     * @return the rules of the level
+     */
+    public static @NotNull LevelSpec create(int level, int handicap) {
+        return new LevelSpec(level, handicap);
+    }
+
+    /**
+     * Returns the level these rules are for.
+     *
+     * @return the level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns the level after applying the handicap, which is used for the
+     * difficulty (speeds, fright times, ghost releases and Elroy).
+     *
+     * @return the handicapped level, at least 1
+     */
+    public int getHandicappedLevel() {
+        return handicappedLevel;
+    }
+
+    public double getPacmanSpeed() {
+        return pacmanSpeed;
+    }
+
+    public double getPacmanFrightenedSpeed() {
+        return pacmanFrightenedSpeed;
+    }
+
+    public double getGhostSpeed() {
+        return ghostSpeed;
+    }
+
+    public double getGhostTunnelSpeed() {
+        return ghostTunnelSpeed;
+    }
+
+    public double getGhostFrightenedSpeed() {
+        return ghostFrightenedSpeed;
+    }
+
+    public double getGhostEatenSpeed() {
+        return ghostEatenSpeed;
+    }
+
+    /**
+     * Returns the speed of Elroy (an angry Blinky) once fewer than
+     * {@link #getElroy1Pellets()} pellets are left.
+     *
+     * @return the first Elroy speed
+     */
+    public double getElroy1Speed() {
+        return elroy1Speed;
+    }
+
+    /**
+     * Returns the speed of Elroy once fewer than {@link #getElroy2Pellets()}
+     * pellets are left.
+     *
+     * @return the second Elroy speed
+     */
+    public double getElroy2Speed() {
+        return elroy2Speed;
+    }
+
+    public int getElroy1Pellets() {
+        return elroy1Pellets;
+    }
+
+    public int getElroy2Pellets() {
+        return elroy2Pellets;
+    }
+
+    /**
+     * Returns the number of ticks the ghosts stay frightened after a power
+     * pellet is eaten.
+     *
+     * @return the fright time, in ticks
+     */
+    public int getFrightenedTicks() {
+        return frightenedTicks;
+    }
+
+    /**
+     * Returns the number of pellets that need to be eaten (since the previous
+     * release) before the ghost at the given index leaves the ghost pen.
+     *
+     * @param ghostIndex the index of the ghost, in spawn order
+     * @return the number of pellets
+     */
+    public int getReleaseBound(int ghostIndex) {
+        return releaseBounds[Math.min(ghostIndex, releaseBounds.length - 1)];
+    }
+
+    /**
+     * Returns the length of the given scatter/chase phase, see
+     * {@link Maze#LEVEL_STATES}. A negative value means the phase never ends.
+     *
+     * @param phase the index of the phase, starting with scatter
+     * @return the length of the phase, in ticks
+     */
+    public int getChaseScatterTicks(int phase) {
+        return chaseScatterTicks[phase];
+    }
+
+    public int getFruitScore() {
+        return fruitScore;
+    }
+
+    /**
+     * Returns the column of the fruit in the fruit sprite sheet.
+     *
+     * @return the fruit sprite column
+     */
+    public int getFruitSpriteIndex() {
+        return fruitSpriteIndex;
+    }
+
+    /**
+     * Returns the column of the {@link #getFruitScore() fruit score} in the
+     * bonus points sprite sheet.
+     *
+     * @return the bonus points sprite column
+     */
+    public int getFruitBonusSpriteIndex() {
+        return fruitBonusSpriteIndex;
+    }
+}
@@ -9,10 +9,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2i;
@@ -29,7 +26,12 @@ import com.buaisociety.pacman.entity.behavior.NeatPacmanBehavior;
 import com.buaisociety.pacman.event.CreateMazeEvent;
 import com.buaisociety.pacman.event.EntityPreSpawnEvent;
 import com.buaisociety.pacman.event.GameEndEvent;
+import com.buaisociety.pacman.network.GenomeEvaluator;
+import com.buaisociety.pacman.network.InferenceBatch;
+import com.buaisociety.pacman.network.NetworkEvaluator;
+import com.buaisociety.pacman.network.PolicyTable;
 import com.buaisociety.pacman.util.EventSystem;
+import com.cjcrafter.neat.Client;
 import com.cjcrafter.neat.Neat;
 import com.cjcrafter.neat.NeatImpl;
 import com.cjcrafter.neat.NeatPrinter;
@@ -39,21 +41,71 @@ import com.cjcrafter.neat.Parameters;
 /**
  * Welcome welcome! This is the main class for the training of pacman. This
  * class is responsible for creating the NEAT algorithm, creating the pacman
- * clients, and updating the game. The game is updated in a separate thread
- * pool to allow for multiple games to be updated at once. The NEAT algorithm
- * is evolved when all games are complete. The NEAT algorithm is saved to a
- * file after each evolution.
+ * clients, and updating the game. The games are updated by a fixed set of
+ * {@link SimulationWorkers} to allow for multiple games to be updated at once.
+ * The NEAT algorithm is evolved when all games are complete. The NEAT
+ * algorithm is saved to a file after each evolution.
+ *
+ * <p>Each client plays {@link #episodesPerClient} games at once, and its
+ * fitness is the {@link #fitnessAggregate aggregate} of those games, written
+ * to the client when the last of them ends. The training conditions
+ * randomize every maze, so a single game is a noisy measure of a genome. To
+ * compare genomes on equal terms, every client of a generation plays the same
+ * scenarios: game <code>k</code> of every client is seeded with the same seed
+ * (a new seed is drawn each generation, plus <code>k</code>). The maze of
+ * each level is randomized from its own stream (see
+ * {@link GameManager#getScenarioRandom()}), so the scenarios stay the same on
+ * later levels, however the genomes played the earlier ones.
+ *
+ * <p>With {@link #rollingEvaluation} (only with 1 episode per client), a
+ * client whose game ends is immediately evaluated again in a new game while
+ * the remaining clients finish, so the threads stay busy instead of waiting
+ * for a few long-surviving pacmen. The fitness of each client is then the
+ * mean score of its finished games. Replay <code>n</code> of every client
+ * uses the same scenario <code>n</code>.
+ *
+ * <p>With {@link #racing}, an {@link EvaluationRace} periodically stops the
+ * games of the clients that are clearly behind, so most of the time is spent
+ * on the clients that compete for selection.
+ *
+ * <p>Training can also run without a window (and without any libGDX backend)
+ * through {@link #runHeadless()}. Nothing is rendered, so no textures are
+ * created for any of the games.
+ *
+ * <p>The networks of all games are evaluated through 1 shared
+ * {@link InferenceBatch}, where each game owns the row of its id (the games of
+ * client <code>i</code> have the ids <code>i * episodesPerClient</code> and
+ * up). The games of a client share 1 {@link GenomeEvaluator}, kept for the
+ * whole generation. After every evolution, the genomes are compiled again on
+ * the main thread, before the games start. Evaluators are not thread-safe, so
+ * the {@link SimulationWorkers} step all games of a client on the same thread.
+ * Since the sensors of {@link NeatPacmanBehavior} only take a few hundred
+ * different values, {@link #policyTables} turns each network into a
+ * {@link PolicyTable} of its decisions, so most ticks only read an array.
  */
 public class Main extends ApplicationAdapter {
 
     private SpriteBatch batch;
     private OrthographicCamera camera;
 
-    private final @NotNull EventSystem events = new EventSystem();
+    private final @NotNull EventSystem events = new EventSystem();  // shared by all games, see createGame()
     private final @NotNull Vector2i visibleGames = new Vector2i(4, 2);
     private final @NotNull List<PacmanNeatClient> managers = new ArrayList<>();
-    private final int totalGames = 250;
+    private final int totalClients = 250;
+    private final int episodesPerClient = 4;  // games per client each generation, the same scenarios for every client
+    private final int totalGames = totalClients * episodesPerClient;
+    private final @NotNull FitnessAggregate fitnessAggregate = FitnessAggregate.MEAN;  // how the games of a client are combined
+    private final @NotNull InferenceBatch inference = new InferenceBatch(totalGames, NeatPacmanBehavior.INPUTS, NeatPacmanBehavior.OUTPUTS);  // 1 row per game
+    private final @NotNull GenomeEvaluator[] networks = new GenomeEvaluator[totalClients];  // compiled once per generation
+    private final @NotNull PolicyTable[] policies = new PolicyTable[totalClients];  // tabulated once per generation
+    private final boolean policyTables = true;  // play from lookup tables instead of evaluating the networks every tick
+    private final int maxTicksPerStep = 60 * 60;
+    private final boolean rollingEvaluation = false;  // replay finished clients while waiting for the rest, needs 1 episode per client
+    private final boolean racing = true;  // stop evaluating hopeless clients early, see EvaluationRace
+    private final @NotNull EvaluationRace race = new EvaluationRace();
+    private long scenarioSeed;  // game k of every client is seeded with scenarioSeed + k
     private GameLoop secondLoop;  // 1 update per second
+    private int ticksPerStep = 1;  // how many ticks each game is advanced per frame
     private boolean paused;
     private boolean showNetworks;
     private int frames;
@@ -63,43 +115,60 @@ public class Main extends ApplicationAdapter {
     private Neat neat;
     private NeatPrinter neatPrinter;
     private NeatSaver neatSaver;
-    private ExecutorService threadPool;
+    private SimulationWorkers workers;
 
     @Override
     public void create() {
         camera = new OrthographicCamera();
         batch = new SpriteBatch();
         camera.setToOrtho(false, 8 * 28 * visibleGames.x, 8 * 36 * visibleGames.y);
+        initialize();
+        //Gdx.graphics.setWindowedMode(8 * 28 * 8, 8 * 36 * 8);
+    }
+
+    /**
+     * Runs the training loop forever on the current thread, without a window.
+     * This does not require a libGDX backend, so it can be used on machines
+     * without a GPU.
+     */
+    public void runHeadless() {
+        // Nobody is watching, so simulate as much as possible per task
+        ticksPerStep = maxTicksPerStep;
+        initialize();
+        while (!Thread.currentThread().isInterrupted()) {
+            step();
+        }
+    }
+
+    /**
+     * Sets up the NEAT algorithm, the thread pool, and the games. This does
+     * not create any textures.
+     */
+    private void initialize() {
+        if (rollingEvaluation && episodesPerClient != 1)
+            throw new IllegalStateException("Rolling evaluation needs 1 episode per client, got " + episodesPerClient);
+
         neat = createNeat();
         neatPrinter = new NeatPrinter(neat);
         neatSaver = new NeatSaver(neat, getSaveFolder());
         secondLoop = new GameLoop(1);
 
         int processors = Runtime.getRuntime().availableProcessors();
-        threadPool = Executors.newFixedThreadPool(processors);
+        workers = new SimulationWorkers(processors);
+        workers.setBatch(inference);
         System.out.println("Using " + processors + " threads");
 
         // When all games have ended, reset
         events.registerListener(GameEndEvent.class, event -> {
             int id = event.getGameManager().getConfig().id;
-            managers.get(id).getGameCompleteFuture().complete(null);
-        });
-
-        // When a new pacman is created, set the behavior
-        events.registerListener(EntityPreSpawnEvent.class, event -> {
-            if (event.getEntityType() != EntityType.PACMAN)
-                return;
-
-            PacmanEntity.Config config = (PacmanEntity.Config) event.getConfig();
-            int id = event.getMaze().getLevelManager().getConfig().id;
-            config.behavior = new NeatPacmanBehavior(neat.getClients().get(id));
+            managers.get(id / episodesPerClient).onGameEnd();
         });
 
         events.registerListener(CreateMazeEvent.class, SpecialTrainingConditions.onCreateMaze());
         events.registerListener(EntityPreSpawnEvent.class, SpecialTrainingConditions.onEntityPreSpawn());
 
         reset();
-        //Gdx.graphics.setWindowedMode(8 * 28 * 8, 8 * 36 * 8);
+        prepareNetworks();
     }
 
     public @NotNull Neat createNeat() {
@@ -126,7 +195,7 @@ public class Main extends ApplicationAdapter {
             neatParameters.setTargetClientsPerSpecies(12);  // targeting ~12 clients per species
             neatParameters.setStagnationLimit(10);  // lower stagnation limit
             neatParameters.setUseBiasNode(true);  // use bias node
-            return new NeatImpl(7, 4, totalGames, neatParameters);
+            return new NeatImpl(7, 4, totalClients, neatParameters);
         }
     }
 
@@ -174,76 +243,128 @@ public class Main extends ApplicationAdapter {
 
     public void reset() {
         for (PacmanNeatClient manager : managers) {
-            manager.getGameManager().dispose();
+            manager.dispose();
         }
         managers.clear();
 
-        for (int i = 0; i < totalGames; i++) {
-            GameManager.Config config = new GameManager.Config();
-            config.id = i;
-            GameManager gameManager = new GameManager(events, config);
-            gameManager.nextLevel();
-            gameManager.setExtraLives(0);
+        // Every client of this generation plays the same scenarios
+        scenarioSeed = ThreadLocalRandom.current().nextLong();
+        for (int i = 0; i < totalClients; i++) {
+            Client client = neat.getClients().get(i);
+            if (networks[i] == null || networks[i].getClient() != client) {
+                networks[i] = new GenomeEvaluator(client, NeatPacmanBehavior.INPUTS, NeatPacmanBehavior.OUTPUTS);
+                policies[i] = new PolicyTable(networks[i], NeatPacmanBehavior.INPUT_VALUES);
+            }
+
+            PacmanNeatClient neatClient = new PacmanNeatClient(neat, client);
+            neatClient.setFitnessAggregate(fitnessAggregate);
+            GameManager[] games = new GameManager[episodesPerClient];
+            for (int episode = 0; episode < episodesPerClient; episode++) {
+                games[episode] = createGame(i, neatClient, episode, episode);
+            }
 
-            PacmanNeatClient neatClient = new PacmanNeatClient(neat, neat.getClients().get(i));
-            neatClient.setGameManager(gameManager);
+            neatClient.setNetwork(networks[i]);
+            neatClient.setGameManagers(games);
             this.managers.add(neatClient);
         }
+        race.start(managers);
+        workers.setGames(managers);
     }
 
-    @Override
-    public void render() {
+    /**
+     * Compiles the network of every client again, and builds its policy
+     * table, on the main thread. The games of a client may then share them
+     * across worker threads, since the workers only start after this
+     * returns. Call this whenever the genomes may have changed.
+     */
+    private void prepareNetworks() {
+        for (int i = 0; i < totalClients; i++) {
+            networks[i].invalidate();
+            policies[i].invalidate();
+            if (policyTables)
+                policies[i].build();
+            else
+                networks[i].compile();
+        }
+    }
 
-        paused ^= Gdx.input.isKeyJustPressed(Input.Keys.SPACE);
-        showNetworks ^= Gdx.input.isKeyJustPressed(Input.Keys.TAB);
+    /**
+     * Creates a new game (starting at the first level) for 1 episode of the
+     * given client.
+     *
+     * @param index    the index of the client
+     * @param manager  the client, which receives the fitness of the game
+     * @param episode  which of the client's games this is
+     * @param scenario the scenario to play, the same for every client
+     * @return the new game
+     */
+    private @NotNull GameManager createGame(int index, @NotNull PacmanNeatClient manager, int episode, int scenario) {
+        // Each game gets its own events, which fan in to the shared listeners
+        EventSystem gameEvents = new EventSystem(events);
 
-        frames++;
-        fps++;
+        // When a new pacman is created, set the behavior
+        int id = index * episodesPerClient + episode;
+        NetworkEvaluator network = policyTables ? policies[index] : networks[index];
+        gameEvents.registerListener(EntityPreSpawnEvent.class, event -> {
+            if (event.getEntityType() != EntityType.PACMAN)
+                return;
 
-        if (secondLoop.update()) {
-            System.out.println("FPS: " + fps + ", Frames: " + frames);
-            fps = 0;
-        }
+            PacmanEntity.Config pacmanConfig = (PacmanEntity.Config) event.getConfig();
+            pacmanConfig.behavior = new NeatPacmanBehavior(network, fitness -> manager.setFitness(episode, fitness), inference, id);
+        });
 
-        // If all games are complete, reset
-        if (managers.stream().map(PacmanNeatClient::getGameCompleteFuture).allMatch(CompletableFuture::isDone)) {
-            reset();
-            System.out.println(neatPrinter.render());
-            neatSaver.save();
-            neat.evolve();
-        }
+        GameManager.Config config = new GameManager.Config();
+        config.id = id;
+        config.seed = scenarioSeed + scenario;
+        GameManager gameManager = new GameManager(gameEvents, config);
+        gameManager.nextLevel();
+        gameManager.setExtraLives(0);
+        return gameManager;
+    }
 
-        // Update games
-        List<Future<?>> futures = new ArrayList<>();
-        List<PacmanNeatClient> updatedManagers = new ArrayList<>();
-        for (PacmanNeatClient manager : managers) {
-            manager.setRenderNetwork(showNetworks);
-            if (manager.getGameCompleteFuture().isDone())
+    /**
+     * Records the fitness of every game that ended during the last step, and
+     * starts a new game for those clients unless the generation is complete.
+     */
+    private void restartFinishedGames() {
+        boolean generationComplete = isGenerationComplete();
+        for (int i = 0; i < managers.size(); i++) {
+            PacmanNeatClient manager = managers.get(i);
+            if (!manager.getGameManager().isGameOver())
                 continue;
 
-            if (!paused) {
-                // Submit the update task and add to updatedManagers
-                Future<?> future = threadPool.submit(() -> {
-                    manager.getGameManager().update();
-                });
-                futures.add(future);
-                updatedManagers.add(manager);
-            }
+            manager.recordEpisode();
+            if (!generationComplete)
+                manager.restartGame(createGame(i, manager, 0, manager.getEpisodes()));
         }
+    }
 
-        // Wait for all games to be updated
-        for (Future<?> future : futures) {
-            try {
-                future.get();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    /**
+     * Returns true if every game of the current generation is complete.
+     *
+     * @return true if every game is complete
+     */
+    private boolean isGenerationComplete() {
+        for (PacmanNeatClient manager : managers) {
+            if (!manager.getGameCompleteFuture().isDone())
+                return false;
         }
+        return true;
+    }
 
-        // Call postUpdate() on the main thread for games that were updated
-        for (PacmanNeatClient manager : updatedManagers) {
-            manager.getGameManager().postUpdate();
-        }
+    @Override
+    public void render() {
+
+        paused ^= Gdx.input.isKeyJustPressed(Input.Keys.SPACE);
+        showNetworks ^= Gdx.input.isKeyJustPressed(Input.Keys.TAB);
+
+        // Fast-forward/slow down the games. Rendering just samples the latest state.
+        if (Gdx.input.isKeyJustPressed(Input.Keys.UP))
+            ticksPerStep = Math.min(ticksPerStep * 2, maxTicksPerStep);
+        if (Gdx.input.isKeyJustPressed(Input.Keys.DOWN))
+            ticksPerStep = Math.max(ticksPerStep / 2, 1);
+
+        step();
 
         // Render everything
         ScreenUtils.clear(0, 0, 0, 1);
@@ -255,6 +376,7 @@ public class Main extends ApplicationAdapter {
 
         int renderCount = 0;
         for (PacmanNeatClient manager : managers) {
+            manager.setRenderNetwork(showNetworks);
             if (manager.getGameCompleteFuture().isDone())
                 continue;
             if (renderCount >= visibleGames.x * visibleGames.y)
@@ -270,8 +392,60 @@ public class Main extends ApplicationAdapter {
         batch.end();
     }
 
+    /**
+     * Updates every game that is still running by {@link #ticksPerStep} ticks,
+     * and evolves the NEAT algorithm once every game is complete.
+     *
+     * <p>Each game is stepped by the worker that owns it, so the scheduling
+     * overhead is paid once per step instead of once per tick.
+     */
+    private void step() {
+        frames++;
+        fps++;
+
+        if (secondLoop.update()) {
+            System.out.println("FPS: " + fps + ", Frames: " + frames);
+            fps = 0;
+        }
+
+        if (rollingEvaluation)
+            restartFinishedGames();
+
+        // If all games are complete, reset
+        if (isGenerationComplete()) {
+            // Games that were still being replayed are discarded
+            if (rollingEvaluation) {
+                for (PacmanNeatClient manager : managers) {
+                    manager.getClient().setScore((float) manager.getMeanFitness());
+                }
+            }
+            if (racing)
+                race.finish();
+
+            reset();
+            System.out.println(neatPrinter.render());
+            neatSaver.save();
+            neat.evolve();
+
+            // The genomes have mutated, so compile them again
+            prepareNetworks();
+        }
+
+        // Update games
+        if (!paused) {
+            // Stop at the next cut, so that racing keeps to its budgets
+            int ticks = racing ? (int) Math.min(ticksPerStep, race.getTicksUntilCut()) : ticksPerStep;
+            workers.step(ticks);
+            if (racing && race.advance(ticks))
+                workers.setGames(race.getRacing());
+        }
+    }
+
     @Override
     public void dispose() {
-        batch.dispose();
+        if (batch != null)
+            batch.dispose();
+        if (workers != null)
+            workers.dispose();
     }
 }
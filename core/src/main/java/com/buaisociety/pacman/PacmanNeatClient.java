@@ -9,6 +9,9 @@ import com.cjcrafter.neat.Client;
 import com.cjcrafter.neat.Neat;
 import com.cjcrafter.neat.genome.ConnectionGene;
 import com.cjcrafter.neat.genome.NodeGene;
+import com.buaisociety.pacman.entity.behavior.NeatPacmanBehavior;
+import com.buaisociety.pacman.maze.Maze;
+import com.buaisociety.pacman.network.GenomeEvaluator;
 import com.buaisociety.pacman.util.Disposable;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -17,17 +20,38 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
+/**
+ * A NEAT client together with the games it is evaluated on in the current
+ * generation.
+ *
+ * <p>A client may play several games (episodes) at once, see
+ * {@link #setGameManagers(GameManager...)}. The behavior of each game reports
+ * its fitness through {@link #setFitness(int, double)}, and once every game is
+ * over, the fitness of the episodes is combined by the
+ * {@link #getFitnessAggregate() aggregate} and written to the client.
+ */
 public class PacmanNeatClient implements Disposable {
 
-    private static final @NotNull Texture NODE_TEXTURE = createNodeTexture();
-    private static final @NotNull TextureRegion CONNECTION_TEXTURE = createConnectionTexture();
+    // Created on the render thread when a network is first rendered
+    private static @Nullable Texture nodeTexture;
+    private static @Nullable TextureRegion connectionTexture;
 
     private final @NotNull Neat neat;
     private final @NotNull Client client;
-    private @Nullable GameManager gameManager;
+    private @NotNull GameManager[] gameManagers = new GameManager[0];
+    private @NotNull double[] gameFitness = new double[0];  // of each game in progress, set by its behavior
+    private @NotNull FitnessAggregate aggregate = FitnessAggregate.MEAN;
     private @Nullable CompletableFuture<Void> gameCompleteFuture;
+    private @Nullable GenomeEvaluator network;  // where the rendered activations come from, if set
+    private final @NotNull float[] renderInputs = new float[NeatPacmanBehavior.INPUTS];
+    private final @NotNull float[] renderOutputs = new float[NeatPacmanBehavior.OUTPUTS];
     private boolean renderNetwork;
 
+    // Fitness of each finished game (episode), used for rolling evaluation
+    private int episodes;
+    private double fitnessSum;
+    private double fitnessSquares;
+
     public PacmanNeatClient(@NotNull Neat neat, @NotNull Client client) {
         this.neat = neat;
         this.client = client;
@@ -41,17 +65,199 @@ public class PacmanNeatClient implements Disposable {
         return client;
     }
 
+    /**
+     * Returns the first game of the client, which is the one that is
+     * rendered.
+     *
+     * @return the first game
+     */
     public @NotNull GameManager getGameManager() {
-        if (gameManager == null)
+        if (gameManagers.length == 0)
             throw new IllegalStateException("Game manager not set");
-        return gameManager;
+        return gameManagers[0];
+    }
+
+    /**
+     * Returns the number of games the client plays, 1 per episode.
+     *
+     * @return the number of games
+     */
+    public int getGameCount() {
+        return gameManagers.length;
+    }
+
+    /**
+     * Returns the game of the given episode.
+     *
+     * @param episode the index of the game, from 0 to {@link #getGameCount()}
+     * @return the game of the episode
+     */
+    public @NotNull GameManager getGameManager(int episode) {
+        return gameManagers[episode];
     }
 
     public void setGameManager(@NotNull GameManager gameManager) {
-        this.gameManager = gameManager;
+        setGameManagers(gameManager);
+    }
+
+    /**
+     * Starts evaluating the client on the given games, 1 per episode. The
+     * {@link #getGameCompleteFuture()} completes once all of them are over.
+     *
+     * @param gameManagers the games to play
+     * @throws IllegalArgumentException if no game is given
+     */
+    public void setGameManagers(@NotNull GameManager... gameManagers) {
+        if (gameManagers.length == 0)
+            throw new IllegalArgumentException("Need at least 1 game");
+
+        this.gameManagers = gameManagers.clone();
+        this.gameFitness = new double[gameManagers.length];
         this.gameCompleteFuture = new CompletableFuture<>();
     }
 
+    /**
+     * Sets the fitness of a game in progress. This is called by the behavior
+     * playing the game, on the thread stepping it.
+     *
+     * @param episode the index of the game
+     * @param fitness the current fitness of the game
+     */
+    public void setFitness(int episode, double fitness) {
+        gameFitness[episode] = fitness;
+    }
+
+    public @NotNull FitnessAggregate getFitnessAggregate() {
+        return aggregate;
+    }
+
+    public void setFitnessAggregate(@NotNull FitnessAggregate aggregate) {
+        this.aggregate = aggregate;
+    }
+
+    /**
+     * Called when 1 of the client's games ends. Once every game is over, the
+     * aggregate fitness of the games is written to the client, and the
+     * {@link #getGameCompleteFuture()} is completed.
+     *
+     * <p>Games of the same client may end on different threads, so this is
+     * synchronized: whichever game ends last sees every other game over.
+     */
+    public synchronized void onGameEnd() {
+        if (gameCompleteFuture == null || gameCompleteFuture.isDone())
+            return;
+        for (GameManager gameManager : gameManagers) {
+            if (!gameManager.isGameOver())
+                return;
+        }
+
+        client.setScore((float) aggregate.apply(gameFitness));
+        gameCompleteFuture.complete(null);
+    }
+
+    /**
+     * Sets the evaluator that plays this client's games, so that rendering
+     * shows its activations instead of the calculator's.
+     *
+     * @param network the evaluator of the client's network, or null
+     */
+    public void setNetwork(@Nullable GenomeEvaluator network) {
+        this.network = network;
+    }
+
+    /**
+     * Replaces the finished game with a new game, to evaluate the client
+     * again. Unlike {@link #setGameManager(GameManager)}, the
+     * {@link #getGameCompleteFuture()} stays complete. Only a client with 1
+     * game can be restarted.
+     *
+     * <p>The old game is disposed, so this should only be called from the
+     * main thread.
+     *
+     * @param gameManager the new game
+     */
+    public void restartGame(@NotNull GameManager gameManager) {
+        if (gameManagers.length != 1)
+            throw new IllegalStateException("Cannot restart 1 of " + gameManagers.length + " games");
+
+        gameManagers[0].dispose();
+        gameManagers[0] = gameManager;
+        gameFitness[0] = 0.0;
+    }
+
+    /**
+     * Records the fitness of the finished game as 1 episode. Only a client
+     * with 1 game is replayed, see {@link #restartGame(GameManager)}.
+     */
+    public void recordEpisode() {
+        double fitness = gameFitness[0];
+        fitnessSum += fitness;
+        fitnessSquares += fitness * fitness;
+        episodes++;
+    }
+
+    /**
+     * Returns the number of episodes recorded by {@link #recordEpisode()}.
+     *
+     * @return the number of recorded episodes
+     */
+    public int getEpisodes() {
+        return episodes;
+    }
+
+    /**
+     * Returns the mean fitness of all recorded episodes, or 0 if no episode
+     * has been recorded.
+     *
+     * @return the mean fitness of all recorded episodes
+     */
+    public double getMeanFitness() {
+        return episodes == 0 ? 0.0 : fitnessSum / episodes;
+    }
+
+    /**
+     * Returns the standard error of {@link #getEstimatedFitness()}, over the
+     * recorded episodes and the games in progress, or 0 if there are fewer
+     * than 2 of them.
+     *
+     * @return the standard error of the estimated fitness
+     */
+    public double getFitnessStandardError() {
+        int count = episodes + gameFitness.length;
+        if (count < 2)
+            return 0.0;
+
+        double sum = fitnessSum;
+        double squares = fitnessSquares;
+        for (double fitness : gameFitness) {
+            sum += fitness;
+            squares += fitness * fitness;
+        }
+        double mean = sum / count;
+        double variance = Math.max(0.0, (squares - count * mean * mean) / (count - 1));
+        return Math.sqrt(variance / count);
+    }
+
+    /**
+     * Returns the best guess of the client's fitness so far, with the same
+     * statistic as its final fitness: the
+     * {@link #getFitnessAggregate() aggregate} of the current fitness of its
+     * games, or, once episodes have been recorded for rolling evaluation, the
+     * mean of the recorded episodes and the game in progress.
+     *
+     * @return the estimated fitness
+     */
+    public double getEstimatedFitness() {
+        if (episodes == 0)
+            return aggregate.apply(gameFitness);
+
+        double sum = fitnessSum;
+        for (double fitness : gameFitness) {
+            sum += fitness;
+        }
+        return sum / Math.max(1, episodes + gameFitness.length);
+    }
+
     public @NotNull CompletableFuture<Void> getGameCompleteFuture() {
         if (gameCompleteFuture == null)
             throw new IllegalStateException("Game manager not set");
@@ -69,8 +275,8 @@ public class PacmanNeatClient implements Disposable {
     public void render(@NotNull SpriteBatch batch) {
         if (renderNetwork)
             renderNeuralNetwork(batch);
-        else if (gameManager != null)
-            gameManager.render(batch);
+        else if (gameManagers.length != 0)
+            gameManagers[0].render(batch);
     }
 
     /**
@@ -79,6 +285,12 @@ public class PacmanNeatClient implements Disposable {
      * @param batch the sprite batch to render to
      */
     private void renderNeuralNetwork(@NotNull SpriteBatch batch) {
+        if (nodeTexture == null)
+            nodeTexture = createNodeTexture();
+        if (connectionTexture == null)
+            connectionTexture = createConnectionTexture();
+        updateActivations();
+
         Map<Integer, NodeGene> cache = new HashMap<>();
         for (NodeGene node : client.getGenome().getNodes()) {
             cache.put(node.getId(), node);
@@ -95,14 +307,31 @@ public class PacmanNeatClient implements Disposable {
         }
     }
 
+    /**
+     * Evaluates the network on the current inputs of the rendered game. A
+     * policy table plays without running the network, so the network's own
+     * activations would be stale otherwise. The workers are idle while
+     * rendering, so the network is free to use.
+     */
+    private void updateActivations() {
+        Maze maze = gameManagers.length == 0 ? null : gameManagers[0].getCurrentMaze();
+        if (network == null || maze == null)
+            return;
+        if (!(maze.getPacman().getBehavior() instanceof NeatPacmanBehavior behavior))
+            return;
+
+        if (behavior.writeInputs(renderInputs, 0))
+            network.evaluate(renderInputs, 0, renderOutputs, 0);
+    }
+
     private void renderNode(@NotNull SpriteBatch batch, @NotNull NodeGene node) {
         float nodeSize = 6;
         float x = node.getPosition().x() * 8 * 28 - nodeSize / 2;
         float y = node.getPosition().y() * 8 * 36 - nodeSize / 2;
 
-        float activation = getClient().getCalculator().getActivation(node.getId());
+        float activation = network != null ? network.getActivation(node.getId()) : getClient().getCalculator().getActivation(node.getId());
         batch.setColor(activation, activation, activation, 1f);
-        batch.draw(NODE_TEXTURE, x, y, nodeSize, nodeSize);
+        batch.draw(nodeTexture, x, y, nodeSize, nodeSize);
         batch.setColor(Color.WHITE);  // reset tint
     }
 
@@ -122,7 +351,7 @@ public class PacmanNeatClient implements Disposable {
 
         float scale = Math.min(Math.abs(connection.getWeight()), 1f);
         batch.setColor(tint);
-        batch.draw(CONNECTION_TEXTURE, x1, y1, 0, 0.5f, distance, 1f, 1f, scale, angle);
+        batch.draw(connectionTexture, x1, y1, 0, 0.5f, distance, 1f, 1f, scale, angle);
         batch.setColor(Color.WHITE);  // reset tint
     }
 
@@ -150,7 +379,8 @@ public class PacmanNeatClient implements Disposable {
      */
     @Override
     public void dispose() {
-        if (gameManager != null)
+        for (GameManager gameManager : gameManagers) {
             gameManager.dispose();
+        }
     }
 }
@@ -0,0 +1,279 @@
+package com.buaisociety.pacman;
+
+import com.buaisociety.pacman.network.InferenceBatch;
+import com.buaisociety.pacman.util.Disposable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A fixed set of long-lived threads that step the games of a population.
+ *
+ * <p>Each worker owns a shard (a contiguous block) of the clients, so the
+ * same games keep running on the same thread every step. All games of a
+ * client are stepped by the same worker within a step, since they share the
+ * client's network evaluator, which is not thread-safe. The workers and the
+ * main thread take turns through a {@link Phaser}:
+ * <ol>
+ *     <li>The update phase: the workers step their games (both
+ *     {@link GameManager#update()} and {@link GameManager#postUpdate()}),
+ *     while the main thread waits.</li>
+ *     <li>The main phase: the workers wait, while the main thread may read the
+ *     games (rendering, evolving, resetting).</li>
+ * </ol>
+ *
+ * <p>Games that are over are skipped. Once a worker runs out of clients in
+ * its own shard, it steals unclaimed clients from the other shards, so a
+ * shard full of long-surviving games does not hold up the step.
+ *
+ * <p>With an {@link InferenceBatch} (see {@link #setBatch(InferenceBatch)}),
+ * workers claim clients until they have a block of at least
+ * {@link #BLOCK_SIZE} games, and step each block in lockstep, 1 tick at a
+ * time: first every game of the block senses its inputs into its row of the
+ * batch (the row is the game's {@link GameManager.Config#id id}), then all of
+ * their networks are evaluated in 1 pass, and only then are the games updated.
+ * This keeps the inference of a block in a tight loop over contiguous memory,
+ * instead of being spread over the updates of each game.
+ */
+public class SimulationWorkers implements Disposable {
+
+    // Cursors are spaced out so that workers do not share cache lines
+    private static final int CURSOR_STRIDE = 16;
+
+    // Games stepped in lockstep per claim (at least), when using a batch
+    public static final int BLOCK_SIZE = 8;
+
+    private final int threads;
+    private final @NotNull Phaser phaser;
+    private final @NotNull AtomicIntegerArray cursors;
+
+    private volatile boolean running;
+    private @NotNull PacmanNeatClient[][] shards;
+    private @Nullable InferenceBatch batch;
+    private int ticksPerStep;
+
+    /**
+     * Starts the given number of worker threads. The threads are daemon
+     * threads, and idle until {@link #step(int)} is called.
+     *
+     * @param threads the number of worker threads
+     */
+    public SimulationWorkers(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Need at least 1 thread, got " + threads);
+
+        this.threads = threads;
+        this.phaser = new Phaser(1);  // the main thread
+        this.cursors = new AtomicIntegerArray(threads * CURSOR_STRIDE);
+        this.running = true;
+        this.shards = new PacmanNeatClient[threads][0];
+
+        for (int i = 0; i < threads; i++) {
+            int index = i;
+            phaser.register();
+            Thread thread = new Thread(() -> runWorker(index), "simulation-worker-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Returns the number of worker threads.
+     *
+     * @return the number of worker threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Splits the clients between the workers. Their games are looked up on
+     * every step, so a game replaced by
+     * {@link PacmanNeatClient#restartGame(GameManager)} is stepped too. This
+     * should only be called from the main thread, between steps.
+     *
+     * @param clients the clients whose games to step
+     */
+    public void setGames(@NotNull List<PacmanNeatClient> clients) {
+        PacmanNeatClient[][] shards = new PacmanNeatClient[threads][];
+        for (int i = 0; i < threads; i++) {
+            int from = clients.size() * i / threads;
+            int to = clients.size() * (i + 1) / threads;
+            shards[i] = clients.subList(from, to).toArray(new PacmanNeatClient[0]);
+        }
+        this.shards = shards;
+    }
+
+    /**
+     * Sets the batch that the networks of the games are evaluated in, or null
+     * to step each game on its own. This should only be called from the main
+     * thread, between steps.
+     *
+     * @param batch the batch with 1 row per game id, or null
+     */
+    public void setBatch(@Nullable InferenceBatch batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * Steps every game that is not over by up to <code>ticks</code> ticks,
+     * and blocks until all workers are done.
+     *
+     * @param ticks the maximum number of ticks to step each game
+     */
+    public void step(int ticks) {
+        if (!running)
+            throw new IllegalStateException("Workers have been disposed");
+
+        ticksPerStep = ticks;
+        for (int i = 0; i < threads; i++) {
+            cursors.set(i * CURSOR_STRIDE, 0);
+        }
+
+        phaser.arriveAndAwaitAdvance();  // start the update phase
+        phaser.arriveAndAwaitAdvance();  // wait for every worker to finish
+    }
+
+    private void runWorker(int index) {
+        Block block = new Block();
+        while (true) {
+            phaser.arriveAndAwaitAdvance();  // wait for the main thread to start a step
+            if (!running) {
+                phaser.arriveAndDeregister();
+                return;
+            }
+
+            // Our own shard first, then steal from the others
+            InferenceBatch batch = this.batch;
+            for (int i = 0; i < threads; i++) {
+                if (batch == null)
+                    runShard((index + i) % threads);
+                else
+                    runShardBatched((index + i) % threads, batch, block);
+            }
+
+            phaser.arriveAndAwaitAdvance();  // let the main thread continue
+        }
+    }
+
+    private void runShard(int shardIndex) {
+        PacmanNeatClient[] shard = shards[shardIndex];
+        int cursor = shardIndex * CURSOR_STRIDE;
+
+        int clientIndex;
+        while ((clientIndex = cursors.getAndIncrement(cursor)) < shard.length) {
+            PacmanNeatClient client = shard[clientIndex];
+            for (int episode = 0; episode < client.getGameCount(); episode++) {
+                GameManager game = client.getGameManager(episode);
+                if (game.isGameOver())
+                    continue;
+
+                try {
+                    // Play through level changes, so that every game uses the
+                    // whole step
+                    int ticks = 0;
+                    while (ticks < ticksPerStep) {
+                        int played = game.step(ticksPerStep - ticks);
+                        if (played == 0)
+                            break;
+                        ticks += played;
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void runShardBatched(int shardIndex, @NotNull InferenceBatch batch, @NotNull Block block) {
+        PacmanNeatClient[] shard = shards[shardIndex];
+        int cursor = shardIndex * CURSOR_STRIDE;
+
+        while (true) {
+            // Claim whole clients until the block is full, so that the games
+            // of a client stay on this thread
+            int clientIndex;
+            while (block.count < BLOCK_SIZE && (clientIndex = cursors.getAndIncrement(cursor)) < shard.length) {
+                PacmanNeatClient client = shard[clientIndex];
+                for (int episode = 0; episode < client.getGameCount(); episode++) {
+                    GameManager game = client.getGameManager(episode);
+                    if (game.getCurrentMaze() != null && !game.isGameOver())
+                        block.add(game);
+                }
+            }
+            if (block.count == 0)
+                return;  // the shard is done
+
+            GameManager[] games = block.games;
+            int count = block.count;
+            for (int tick = 0; tick < ticksPerStep && count > 0; tick++) {
+                // Sense, then evaluate every network of the block in 1 pass
+                for (int i = 0; i < count; i++) {
+                    batch.prepare(games[i].getConfig().id);
+                }
+                for (int i = 0; i < count; i++) {
+                    batch.evaluate(games[i].getConfig().id);
+                }
+
+                // Update, and drop the games that ended. Games play on through
+                // level changes, so that every game uses the whole step
+                int kept = 0;
+                for (int i = 0; i < count; i++) {
+                    GameManager game = games[i];
+                    try {
+                        game.update();
+                        game.postUpdate();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        continue;
+                    }
+
+                    if (game.getCurrentMaze() != null && !game.isGameOver())
+                        games[kept++] = game;
+                }
+                count = kept;
+            }
+
+            // Do not keep games alive through the scratch array
+            block.clear();
+        }
+    }
+
+    /**
+     * Stops the worker threads. This should only be called from the main
+     * thread, between steps.
+     */
+    @Override
+    public void dispose() {
+        if (!running)
+            return;
+
+        running = false;
+        phaser.arriveAndAwaitAdvance();  // wake up the workers so they can exit
+        phaser.arriveAndDeregister();
+    }
+
+    /**
+     * The games a worker steps in lockstep. A block grows when the clients it
+     * claims have more games than {@link #BLOCK_SIZE}.
+     */
+    private static final class Block {
+        private @NotNull GameManager[] games = new GameManager[BLOCK_SIZE];
+        private int count;
+
+        private void add(@NotNull GameManager game) {
+            if (count == games.length)
+                games = Arrays.copyOf(games, count * 2);
+            games[count++] = game;
+        }
+
+        private void clear() {
+            Arrays.fill(games, null);
+            count = 0;
+        }
+    }
+}
@@ -6,11 +6,10 @@ import com.buaisociety.pacman.event.EntityPreSpawnEvent;
 import com.buaisociety.pacman.maze.Maze;
 import com.buaisociety.pacman.maze.TileState;
 import com.buaisociety.pacman.util.EventListener;
+import com.buaisociety.pacman.util.GameRandom;
 import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2ic;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 /**
  * Just a quick utility class to help with your special training conditions.
  * You can add as many methods as needed to help with your training. This is
@@ -38,11 +37,14 @@ public final class SpecialTrainingConditions {
     public static @NotNull EventListener<CreateMazeEvent> onCreateMaze() {
         return event -> {
             Maze maze = event.getMaze();
+            // The scenario stream only depends on the seed and the level, so
+            // games with the same seed train on the same mazes
+            GameRandom random = event.getGameManager().getScenarioRandom();
 
             // Go through each cell in the maze and try to remove pellets
             // During training, this is useful since the randomness will help
             // prevent overfitting
-            double pelletDensity = ThreadLocalRandom.current().nextDouble();
+            double pelletDensity = random.nextDouble();
             Vector2ic dimensions = maze.getDimensions();
             for (int x = 0; x < dimensions.x(); x++) {
                 for (int y = 0; y < dimensions.y(); y++) {
@@ -50,7 +52,7 @@ public final class SpecialTrainingConditions {
                     if (tileState != TileState.PELLET && tileState != TileState.POWER_PELLET)
                         continue;
 
-                    if (ThreadLocalRandom.current().nextDouble() < pelletDensity) {
+                    if (random.nextDouble() < pelletDensity) {
                         maze.getTile(x, y).setState(TileState.SPACE);
                     }
                 }
@@ -60,8 +62,8 @@ public final class SpecialTrainingConditions {
             maze.initTiles();
 
             // spawn in a fruit by default to help Pacman learn to eat them
-            if (ThreadLocalRandom.current().nextDouble() < 0.75) {
-                maze.spawnFruit();
+            if (random.nextDouble() < 0.75) {
+                maze.spawnFruit(random);
             }
         };
     }
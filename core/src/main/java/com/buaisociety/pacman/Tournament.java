@@ -10,17 +10,25 @@ import com.badlogic.gdx.utils.viewport.FitViewport;
 import com.buaisociety.pacman.entity.EntityType;
 import com.buaisociety.pacman.entity.PacmanEntity;
 import com.buaisociety.pacman.entity.behavior.Behavior;
+import com.buaisociety.pacman.entity.behavior.NeatPacmanBehavior;
 import com.buaisociety.pacman.entity.behavior.TournamentBehavior;
 import com.buaisociety.pacman.event.EntityPreSpawnEvent;
+import com.buaisociety.pacman.network.CompiledNetwork;
+import com.buaisociety.pacman.network.GenomeEvaluator;
 import com.buaisociety.pacman.util.EventListener;
 import com.buaisociety.pacman.util.EventSystem;
+import com.cjcrafter.neat.Client;
+import com.cjcrafter.neat.NeatImpl;
 import com.cjcrafter.neat.compute.SimpleCalculator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.function.Supplier;
 
 /**
  * Hey there! You can use this file to test your best client against the tests
@@ -46,8 +54,34 @@ public class Tournament extends ApplicationAdapter {
      * @return The behavior to submit to the tournament
      */
     public Behavior setupBehavior() {
+        Supplier<Behavior> behaviors = setupBehaviors();
+        return behaviors == null ? null : behaviors.get();
+    }
+
+    /**
+     * Loads the best client once, and returns a factory that creates a new
+     * behavior for it. Every behavior has its own network, so behaviors from
+     * the same factory may play on different threads.
+     *
+     * @return the factory, or null if the client could not be loaded
+     */
+    public @Nullable Supplier<Behavior> setupBehaviors() {
         // TODO: Choose your best client here
-        File file = new File("saves" + File.separator + "oct20-4" + File.separator + "best-calculator-127.json");
+        File folder = new File("saves" + File.separator + "oct20-4");
+        int generation = 127;
+
+        // The generation save has the genomes, so the best one can be compiled
+        // into a flat network. Otherwise, fall back to the saved calculator.
+        File generationFile = new File(folder, "generation-" + generation + ".json");
+        if (generationFile.exists()) {
+            Client best = loadBestClient(generationFile);
+            CompiledNetwork network = best == null ? null
+                : new GenomeEvaluator(best, NeatPacmanBehavior.INPUTS, NeatPacmanBehavior.OUTPUTS).getCompiledNetwork();
+            if (network != null)
+                return () -> new TournamentBehavior(network.copy());
+        }
+
+        File file = new File(folder, "best-calculator-" + generation + ".json");
         if (!file.exists()) {
             System.err.println("Could not find the file: " + file.getAbsolutePath());
             return null;
@@ -60,8 +94,52 @@ public class Tournament extends ApplicationAdapter {
             e.printStackTrace();
             return null;
         }
-        SimpleCalculator calculator = SimpleCalculator.fromJson(json);
-        return new TournamentBehavior(calculator);
+
+        // Calculators are not thread-safe, so each behavior parses its own
+        return () -> new TournamentBehavior(SimpleCalculator.fromJson(json));
+    }
+
+    /**
+     * Loads a generation saved by the NEAT saver, and returns its client with
+     * the highest score.
+     *
+     * @param file the generation save
+     * @return the best client, or null if the file could not be loaded
+     */
+    public static Client loadBestClient(@NotNull File file) {
+        String json;
+        try {
+            json = new String(Files.readAllBytes(Paths.get(file.getPath())));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+        NeatImpl neat = NeatImpl.fromJson(json);
+        return neat.getClients().stream().max(Comparator.comparingDouble(Client::getScore)).orElse(null);
+    }
+
+    /**
+     * Plays the tournament many times in parallel without a window, using a
+     * new behavior from {@link #setupBehaviors()} for each game, and prints the
+     * score distribution. See {@link TournamentEvaluator}.
+     *
+     * @param episodes the number of games to play
+     */
+    public void evaluateHeadless(int episodes) {
+        Supplier<Behavior> behaviors = setupBehaviors();
+        if (behaviors == null) {
+            System.err.println("Could not find any behavior");
+            return;
+        }
+
+        TournamentEvaluator.Config config = new TournamentEvaluator.Config();
+        config.episodes = episodes;
+        System.out.println("Playing " + episodes + " tournament games on " + config.threads + " threads");
+
+        long start = System.nanoTime();
+        TournamentEvaluator.Report report = new TournamentEvaluator(config).evaluate(behaviors);
+        System.out.println(report);
+        System.out.println("Took " + (System.nanoTime() - start) / 1_000_000 + " ms");
     }
 
     @Override
@@ -0,0 +1,323 @@
+package com.buaisociety.pacman;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.buaisociety.pacman.entity.Direction;
+import com.buaisociety.pacman.entity.Entity;
+import com.buaisociety.pacman.entity.EntityType;
+import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.entity.behavior.Behavior;
+import com.buaisociety.pacman.event.EntityPreSpawnEvent;
+import com.buaisociety.pacman.event.LoseLifeEvent;
+import com.buaisociety.pacman.util.EventSystem;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Plays the {@link Tournament} gauntlet many times without a window, as fast
+ * as the CPU allows, to score a behavior before submitting it.
+ *
+ * <p>Every episode is a complete tournament game: the same levels, handicap
+ * and lives as {@link Tournament}, played until the game is over. The only
+ * differences are that the ticks are not limited to 60 per second, that each
+ * episode has its own seed (episode <code>i</code> uses
+ * {@link Config#seed} + <code>i</code>, so a report can be reproduced), and
+ * that an episode is cut off after {@link Config#maxTicks} ticks in case a
+ * behavior never dies. Episodes run in parallel, each on its own game and
+ * its own behavior.
+ *
+ * <p>Behaviors are created by a factory, since most behaviors (like
+ * {@link com.buaisociety.pacman.entity.behavior.TournamentBehavior}) keep
+ * state and scratch arrays. Like the live tournament, 1 behavior is used for
+ * every pacman of an episode. Any rule the behavior enforces, such as the
+ * 40 second no-score kill, therefore applies as it does live.
+ */
+public class TournamentEvaluator {
+
+    private final @NotNull Config config;
+
+    public TournamentEvaluator() {
+        this(new Config());
+    }
+
+    public TournamentEvaluator(@NotNull Config config) {
+        if (config.episodes < 1)
+            throw new IllegalArgumentException("Need at least 1 episode, got " + config.episodes);
+        if (config.threads < 1)
+            throw new IllegalArgumentException("Need at least 1 thread, got " + config.threads);
+
+        this.config = config;
+    }
+
+    /**
+     * Plays every episode, and blocks until all of them are over.
+     *
+     * @param behaviors creates a new behavior for each episode
+     * @return the results of the episodes
+     * @throws IllegalStateException if the factory does not create a behavior
+     */
+    public @NotNull Report evaluate(@NotNull Supplier<? extends Behavior> behaviors) {
+        ExecutorService executor = Executors.newFixedThreadPool(config.threads, runnable -> {
+            Thread thread = new Thread(runnable, "tournament-evaluator");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<CompletableFuture<Episode>> futures = new ArrayList<>(config.episodes);
+            for (int i = 0; i < config.episodes; i++) {
+                long seed = config.seed + i;
+                futures.add(CompletableFuture.supplyAsync(() -> play(behaviors.get(), seed), executor));
+            }
+
+            List<Episode> episodes = new ArrayList<>(config.episodes);
+            for (CompletableFuture<Episode> future : futures) {
+                episodes.add(future.join());
+            }
+            return new Report(episodes);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private @NotNull Episode play(@Nullable Behavior behavior, long seed) {
+        if (behavior == null)
+            throw new IllegalStateException("Could not create a behavior");
+
+        RecordingBehavior recorder = new RecordingBehavior(behavior);
+        int[] deaths = new int[DeathCause.values().length];
+
+        EventSystem events = new EventSystem();
+        events.registerListener(EntityPreSpawnEvent.class, event -> {
+            if (event.getEntityType() == EntityType.PACMAN)
+                ((PacmanEntity.Config) event.getConfig()).behavior = recorder;
+        });
+        events.registerListener(LoseLifeEvent.class, event -> {
+            DeathCause cause = recorder.killedItself ? DeathCause.NO_SCORE : DeathCause.GHOST;
+            deaths[cause.ordinal()]++;
+            recorder.killedItself = false;
+        });
+
+        GameManager.Config gameConfig = new GameManager.Config();
+        gameConfig.levelsPreset = config.levelsPreset;
+        gameConfig.handicap = config.handicap;
+        gameConfig.seed = seed;
+        GameManager game = new GameManager(events, gameConfig);
+        game.nextLevel();
+
+        long ticks = 0;
+        while (!game.isGameOver() && ticks < config.maxTicks) {
+            ticks += game.step((int) Math.min(Integer.MAX_VALUE, config.maxTicks - ticks));
+        }
+
+        Episode episode = new Episode(seed, game.getScore(), game.getLevel(), ticks, !game.isGameOver(), deaths);
+        game.dispose();
+        return episode;
+    }
+
+    /**
+     * Why pacman lost a life.
+     */
+    public enum DeathCause {
+
+        /**
+         * Caught by a ghost.
+         */
+        GHOST,
+
+        /**
+         * Killed by its own behavior, i.e. the no-score rule of the
+         * tournament.
+         */
+        NO_SCORE
+    }
+
+    /**
+     * The result of 1 tournament game.
+     */
+    public static final class Episode {
+        private final long seed;
+        private final int score;
+        private final int level;
+        private final long ticks;
+        private final boolean cutOff;
+        private final @NotNull int[] deaths;
+
+        private Episode(long seed, int score, int level, long ticks, boolean cutOff, @NotNull int[] deaths) {
+            this.seed = seed;
+            this.score = score;
+            this.level = level;
+            this.ticks = ticks;
+            this.cutOff = cutOff;
+            this.deaths = deaths;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * Returns the level pacman was on when the game ended.
+         *
+         * @return the level reached
+         */
+        public int getLevel() {
+            return level;
+        }
+
+        public long getTicks() {
+            return ticks;
+        }
+
+        /**
+         * Returns true if the game was stopped by {@link Config#maxTicks},
+         * instead of ending.
+         *
+         * @return true if the game was cut off
+         */
+        public boolean isCutOff() {
+            return cutOff;
+        }
+
+        /**
+         * Returns the number of lives lost for the given cause.
+         *
+         * @param cause the cause
+         * @return the number of lives lost
+         */
+        public int getDeaths(@NotNull DeathCause cause) {
+            return deaths[cause.ordinal()];
+        }
+    }
+
+    /**
+     * The score distribution of all episodes.
+     */
+    public static final class Report {
+        private final @NotNull List<Episode> episodes;
+        private final @NotNull int[] sortedScores;
+
+        private Report(@NotNull List<Episode> episodes) {
+            this.episodes = List.copyOf(episodes);
+            this.sortedScores = episodes.stream().mapToInt(Episode::getScore).sorted().toArray();
+        }
+
+        public @NotNull List<Episode> getEpisodes() {
+            return episodes;
+        }
+
+        public double getMeanScore() {
+            return Arrays.stream(sortedScores).average().orElse(0.0);
+        }
+
+        /**
+         * Returns the score that <code>percentile</code> percent of the
+         * episodes did not exceed (nearest rank).
+         *
+         * @param percentile the percentile, from 0 to 100
+         * @return the score at the percentile
+         */
+        public int getScorePercentile(double percentile) {
+            if (percentile < 0 || percentile > 100)
+                throw new IllegalArgumentException("Percentile must be between 0 and 100, got " + percentile);
+
+            int rank = (int) Math.ceil(percentile / 100.0 * sortedScores.length);
+            return sortedScores[Math.max(0, rank - 1)];
+        }
+
+        /**
+         * Returns how many episodes ended on each level.
+         *
+         * @return the number of episodes per level reached, by level
+         */
+        public @NotNull Map<Integer, Integer> getLevelsReached() {
+            Map<Integer, Integer> levels = new TreeMap<>();
+            for (Episode episode : episodes) {
+                levels.merge(episode.getLevel(), 1, Integer::sum);
+            }
+            return levels;
+        }
+
+        /**
+         * Returns the number of lives lost for the given cause, over all
+         * episodes.
+         *
+         * @param cause the cause
+         * @return the total number of lives lost
+         */
+        public int getDeaths(@NotNull DeathCause cause) {
+            int deaths = 0;
+            for (Episode episode : episodes) {
+                deaths += episode.getDeaths(cause);
+            }
+            return deaths;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("Episodes: ").append(episodes.size()).append('\n');
+            builder.append(String.format("Score: mean %.1f, min %d, p10 %d, p25 %d, median %d, p75 %d, p90 %d, max %d%n",
+                getMeanScore(), sortedScores[0], getScorePercentile(10), getScorePercentile(25), getScorePercentile(50),
+                getScorePercentile(75), getScorePercentile(90), sortedScores[sortedScores.length - 1]));
+            builder.append("Levels reached: ").append(getLevelsReached()).append('\n');
+            builder.append("Lives lost:");
+            for (DeathCause cause : DeathCause.values()) {
+                builder.append(' ').append(cause).append('=').append(getDeaths(cause));
+            }
+            long cutOff = episodes.stream().filter(Episode::isCutOff).count();
+            if (cutOff > 0)
+                builder.append("\nCut off after the tick limit: ").append(cutOff);
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Remembers whether the wrapped behavior killed pacman itself.
+     */
+    private static final class RecordingBehavior implements Behavior {
+        private final @NotNull Behavior behavior;
+        private boolean killedItself;
+
+        private RecordingBehavior(@NotNull Behavior behavior) {
+            this.behavior = behavior;
+        }
+
+        @Override
+        public @NotNull Direction getDirection(@NotNull Entity entity) {
+            PacmanEntity pacman = (PacmanEntity) entity;
+            boolean wasAlive = pacman.isAlive();
+            Direction direction = behavior.getDirection(entity);
+            if (wasAlive && !pacman.isAlive())
+                killedItself = true;
+            return direction;
+        }
+
+        @Override
+        public void render(@NotNull SpriteBatch batch) {
+            behavior.render(batch);
+        }
+    }
+
+    public static class Config {
+        public int episodes = 32;
+        public int threads = Runtime.getRuntime().availableProcessors();
+        public long seed = 0;  // episode i is seeded with seed + i
+        public long maxTicks = 60L * 60 * 60;  // 1 hour of game time per episode
+        public @NotNull String levelsPreset = "tournament_levels.json";  // same as Tournament
+        public int handicap = 8;  // same as Tournament
+    }
+}
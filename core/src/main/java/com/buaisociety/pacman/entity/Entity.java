@@ -3,7 +3,6 @@ package com.buaisociety.pacman.entity;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.buaisociety.pacman.entity.behavior.Behavior;
 import com.buaisociety.pacman.maze.Maze;
-import com.buaisociety.pacman.maze.Tile;
 import com.buaisociety.pacman.util.Disposable;
 import com.buaisociety.pacman.util.NumberUtil;
 import org.jetbrains.annotations.NotNull;
@@ -11,13 +10,32 @@ import org.joml.Vector2d;
 import org.joml.Vector2dc;
 import org.joml.Vector2i;
 
+import java.nio.ByteBuffer;
+
 /**
  * Represents an entity in the game.
+ *
+ * <p>When {@link com.buaisociety.pacman.GameManager.Config#fixedPointMovement}
+ * is enabled, the entity moves in whole {@link #SUBPIXELS sub-pixel} units:
+ * speeds are rounded to sub-pixels per tick, and moving, {@link #canMove(Direction)}
+ * and snapping to tile centers use integer arithmetic only. The position is
+ * then always a multiple of <code>1 / SUBPIXELS</code>, which a double holds
+ * exactly.
  */
 public abstract class Entity implements Disposable {
 
     public static final double BASE_SPEED = 1.26262627083;
 
+    /**
+     * The number of sub-pixel units per pixel, when using fixed-point movement.
+     */
+    public static final int SUBPIXELS = 256;
+
+    protected static final Direction[] DIRECTIONS = Direction.values();
+
+    // Within this distance (in pixels) an entity is considered to be on a point
+    private static final double CENTER_EPSILON = 0.1;
+
     protected final @NotNull Maze maze;
     protected final @NotNull EntityType type;
     protected int ticksAlive;
@@ -25,6 +43,10 @@ public abstract class Entity implements Disposable {
     protected Vector2dc lastPosition;
     protected Vector2dc position;
     protected Direction direction;
+    private int tileIndex;  // kept in sync with position, see Maze#updateOccupancy
+    private final boolean fixedPoint;
+    private int fixedX;  // position in sub-pixels, only used with fixed-point movement
+    private int fixedY;
 
     protected Entity(@NotNull Maze maze, @NotNull EntityType type) {
         this.maze = maze;
@@ -34,6 +56,19 @@ public abstract class Entity implements Disposable {
         this.lastPosition = new Vector2d();
         this.position = new Vector2d();
         this.direction = Direction.UP;
+        this.tileIndex = maze.getTileIndex(0, 0);
+        this.fixedPoint = maze.getLevelManager().getConfig().fixedPointMovement;
+    }
+
+    /**
+     * Converts a distance in pixels to the nearest whole number of
+     * {@link #SUBPIXELS sub-pixels}.
+     *
+     * @param pixels the distance in pixels
+     * @return the distance in sub-pixels
+     */
+    public static int toSubpixels(double pixels) {
+        return (int) Math.round(pixels * SUBPIXELS);
     }
 
     public @NotNull Maze getMaze() {
@@ -48,19 +83,123 @@ public abstract class Entity implements Disposable {
         return ticksAlive;
     }
 
+    /**
+     * Returns a copy of the position of the entity, in pixels. Prefer
+     * {@link #getX()}, {@link #getY()} or {@link #getPositionView()} in code
+     * that runs every tick, since this allocates a new vector.
+     *
+     * @return a copy of the position
+     */
     public @NotNull Vector2d getPosition() {
         return new Vector2d(position);
     }
 
+    /**
+     * Returns a read-only view of the position of the entity, in pixels. The
+     * view changes as the entity moves.
+     *
+     * @return the position of the entity
+     */
+    public @NotNull Vector2dc getPositionView() {
+        return position;
+    }
+
+    public double getX() {
+        return position.x();
+    }
+
+    public double getY() {
+        return position.y();
+    }
+
     public void setPosition(@NotNull Vector2dc position) {
+        setPosition(position.x(), position.y());
+    }
+
+    /**
+     * Sets the position of the entity, in pixels. With fixed-point movement,
+     * the position is rounded to the nearest sub-pixel.
+     *
+     * @param x the x-coordinate in pixels
+     * @param y the y-coordinate in pixels
+     */
+    public void setPosition(double x, double y) {
+        if (fixedPoint) {
+            setSubpixelPosition(toSubpixels(x), toSubpixels(y));
+            return;
+        }
+
+        updatePosition(x, y, (int) x / Maze.TILE_SIZE, (int) y / Maze.TILE_SIZE);
+    }
+
+    private void setSubpixelPosition(int x, int y) {
+        fixedX = x;
+        fixedY = y;
+        updatePosition((double) x / SUBPIXELS, (double) y / SUBPIXELS, x / SUBPIXELS / Maze.TILE_SIZE, y / SUBPIXELS / Maze.TILE_SIZE);
+    }
+
+    private void updatePosition(double x, double y, int tileX, int tileY) {
         ((Vector2d) this.lastPosition).set(this.position);
-        ((Vector2d) this.position).set(position);
+        ((Vector2d) this.position).set(x, y);
+
+        int oldTileIndex = tileIndex;
+        tileIndex = maze.getTileIndex(tileX, tileY);
+        if (oldTileIndex != tileIndex)
+            maze.updateOccupancy(this, oldTileIndex, tileIndex);
+    }
+
+    /**
+     * Returns true if this entity moves in whole sub-pixel units, see
+     * {@link com.buaisociety.pacman.GameManager.Config#fixedPointMovement}.
+     *
+     * @return true if using fixed-point movement
+     */
+    public boolean isFixedPoint() {
+        return fixedPoint;
+    }
+
+    private int getPixelX() {
+        return fixedPoint ? fixedX / SUBPIXELS : (int) position.x();
+    }
+
+    private int getPixelY() {
+        return fixedPoint ? fixedY / SUBPIXELS : (int) position.y();
     }
 
     public @NotNull Vector2i getTilePosition() {
         return maze.toTileCoords(position);
     }
 
+    /**
+     * Returns the x-coordinate of the tile this entity is in, like
+     * {@link #getTilePosition()} without allocating.
+     *
+     * @return the tile x-coordinate
+     */
+    public int getTileX() {
+        return getPixelX() / Maze.TILE_SIZE;
+    }
+
+    /**
+     * Returns the y-coordinate of the tile this entity is in, like
+     * {@link #getTilePosition()} without allocating.
+     *
+     * @return the tile y-coordinate
+     */
+    public int getTileY() {
+        return getPixelY() / Maze.TILE_SIZE;
+    }
+
+    /**
+     * Returns the index of the tile this entity is in, see
+     * {@link Maze#getTileIndex(int, int)}.
+     *
+     * @return the index of the current tile
+     */
+    public int getTileIndex() {
+        return tileIndex;
+    }
+
     public @NotNull Vector2i getSpawnTile() {
         return spawnTile;
     }
@@ -80,6 +219,41 @@ public abstract class Entity implements Disposable {
     public void reset() {
     }
 
+    /**
+     * Writes the state of this entity that changes during a game (position,
+     * direction, timers) to the buffer, see {@link com.buaisociety.pacman.GameManager#snapshot()}.
+     * Subclasses that add state should write it after calling super. The
+     * behavior of the entity is not part of its state.
+     *
+     * @param buffer the buffer to write to
+     */
+    public void saveState(@NotNull ByteBuffer buffer) {
+        buffer.putInt(ticksAlive);
+        buffer.putDouble(position.x());
+        buffer.putDouble(position.y());
+        buffer.putDouble(lastPosition.x());
+        buffer.putDouble(lastPosition.y());
+        buffer.put((byte) direction.ordinal());
+    }
+
+    /**
+     * Reads the state written by {@link #saveState(ByteBuffer)}, replacing the
+     * current state of this entity.
+     *
+     * @param buffer the buffer to read from
+     */
+    public void loadState(@NotNull ByteBuffer buffer) {
+        ticksAlive = buffer.getInt();
+        double x = buffer.getDouble();
+        double y = buffer.getDouble();
+        double lastX = buffer.getDouble();
+        double lastY = buffer.getDouble();
+        direction = DIRECTIONS[buffer.get()];
+
+        setPosition(x, y);
+        ((Vector2d) lastPosition).set(lastX, lastY);
+    }
+
     /**
      * Returns true if the entity should be removed from the game (permanent death).
      *
@@ -114,16 +288,13 @@ public abstract class Entity implements Disposable {
      * @return true if the entity can move in the given direction.
      */
     public boolean canMove(@NotNull Direction direction) {
-        Tile current = maze.getTile(getTilePosition());
-        Tile next = current.getNeighbor(direction);
-
         // When the next tile is not passable, the only case we can move forward
         // in that direction is when we still have some space to move in the
         // current tile (in pixel coordinates).
-        if (!next.getState().isPassable()) {
-            Vector2i currentPixel = new Vector2i((int) position.x(), (int) position.y());
-            Vector2i toCenter = current.getCenterPixel().sub(currentPixel);
-            int dot = toCenter.x * direction.getDx() + toCenter.y * direction.getDy();
+        if (!maze.isPassable(tileIndex, direction)) {
+            int toCenterX = maze.getTileCenterX(tileIndex) - getPixelX();
+            int toCenterY = maze.getTileCenterY(tileIndex) - getPixelY();
+            int dot = toCenterX * direction.getDx() + toCenterY * direction.getDy();
 
             return Math.abs(dot) > 0;
         }
@@ -132,31 +303,139 @@ public abstract class Entity implements Disposable {
     }
 
     public void move(@NotNull Direction direction, double speed, boolean fixCenter) {
-        Vector2d position = getPosition();
+        if (fixedPoint) {
+            moveSubpixels(direction, toSubpixels(speed), fixCenter);
+            return;
+        }
 
-        Tile currentTile = maze.getTile(getTilePosition());
-        Tile nextTile = currentTile.getNeighbor(direction);
+        double x = position.x();
+        double y = position.y();
+        int centerX = maze.getTileCenterX(tileIndex);
+        int centerY = maze.getTileCenterY(tileIndex);
 
         // To prevent overshooting, we should move towards the center of the current tile
-        if (!nextTile.getState().isPassable() && this instanceof PacmanEntity) {
-            Vector2i center = currentTile.getCenterPixel();
-            position.x = NumberUtil.moveTowards(position.x(), center.x(), speed);
-            position.y = NumberUtil.moveTowards(position.y(), center.y(), speed);
+        if (!maze.isPassable(tileIndex, direction) && this instanceof PacmanEntity) {
+            x = NumberUtil.moveTowards(x, centerX, speed);
+            y = NumberUtil.moveTowards(y, centerY, speed);
         } else {
-            position.add(speed * direction.getDx(), speed * direction.getDy());
+            x = x + speed * direction.getDx();
+            y = y + speed * direction.getDy();
         }
 
         if (fixCenter) {
-            Vector2i center = currentTile.getCenterPixel();
             if (direction.isHorizontal()) {
-                position.y = NumberUtil.moveTowards(position.y(), center.y(), speed);
+                y = NumberUtil.moveTowards(y, centerY, speed);
             } else {
-                position.x = NumberUtil.moveTowards(position.x(), center.x(), speed);
+                x = NumberUtil.moveTowards(x, centerX, speed);
             }
         }
 
         // When going through a tunnel, we need to wrap around the maze.
-        setPosition(maze.getWrappedPosition(position));
+        setPosition(maze.wrapX(x), maze.wrapY(y));
+    }
+
+    private void moveSubpixels(@NotNull Direction direction, int speed, boolean fixCenter) {
+        int x = fixedX;
+        int y = fixedY;
+        int centerX = maze.getTileCenterX(tileIndex) * SUBPIXELS;
+        int centerY = maze.getTileCenterY(tileIndex) * SUBPIXELS;
+
+        // Same as move(), see the comments there
+        if (!maze.isPassable(tileIndex, direction) && this instanceof PacmanEntity) {
+            x = NumberUtil.moveTowards(x, centerX, speed);
+            y = NumberUtil.moveTowards(y, centerY, speed);
+        } else {
+            x += speed * direction.getDx();
+            y += speed * direction.getDy();
+        }
+
+        if (fixCenter) {
+            if (direction.isHorizontal()) {
+                y = NumberUtil.moveTowards(y, centerY, speed);
+            } else {
+                x = NumberUtil.moveTowards(x, centerX, speed);
+            }
+        }
+
+        int width = maze.getPixelDimensions().x() * SUBPIXELS;
+        int height = maze.getPixelDimensions().y() * SUBPIXELS;
+        setSubpixelPosition(Math.floorMod(x, width), Math.floorMod(y, height));
+    }
+
+    /**
+     * Moves the entity in a straight line towards the given pixel, without
+     * overshooting it. Unlike {@link #move(Direction, double, boolean)}, this
+     * ignores walls and does not wrap around the maze.
+     *
+     * @param pixelX the x-coordinate of the target pixel
+     * @param pixelY the y-coordinate of the target pixel
+     * @param speed  the maximum distance to move along each axis, in pixels
+     */
+    protected void moveTowards(int pixelX, int pixelY, double speed) {
+        if (fixedPoint) {
+            int delta = toSubpixels(speed);
+            int x = NumberUtil.moveTowards(fixedX, pixelX * SUBPIXELS, delta);
+            int y = NumberUtil.moveTowards(fixedY, pixelY * SUBPIXELS, delta);
+            setSubpixelPosition(x, y);
+            return;
+        }
+
+        double x = NumberUtil.moveTowards(position.x(), pixelX, speed);
+        double y = NumberUtil.moveTowards(position.y(), pixelY, speed);
+        setPosition(x, y);
+    }
+
+    /**
+     * Moves the entity along the x-axis towards the given pixel column, like
+     * {@link #moveTowards(int, int, double)}.
+     *
+     * @param pixelX the x-coordinate of the target column
+     * @param speed  the maximum distance to move, in pixels
+     */
+    protected void moveTowardsX(int pixelX, double speed) {
+        if (fixedPoint) {
+            setSubpixelPosition(NumberUtil.moveTowards(fixedX, pixelX * SUBPIXELS, toSubpixels(speed)), fixedY);
+            return;
+        }
+
+        setPosition(NumberUtil.moveTowards(position.x(), pixelX, speed), position.y());
+    }
+
+    /**
+     * Returns true if the entity is on the given pixel. With fixed-point
+     * movement, the position has to match exactly, otherwise it may be off
+     * by a small epsilon.
+     *
+     * @param pixelX the x-coordinate of the pixel
+     * @param pixelY the y-coordinate of the pixel
+     * @return true if the entity is on the pixel
+     */
+    protected boolean isOnPixel(int pixelX, int pixelY) {
+        if (fixedPoint)
+            return fixedX == pixelX * SUBPIXELS && fixedY == pixelY * SUBPIXELS;
+
+        return Math.abs(position.x() - pixelX) <= CENTER_EPSILON && Math.abs(position.y() - pixelY) <= CENTER_EPSILON;
+    }
+
+    /**
+     * Returns the index of the tile the entity would be in after moving
+     * <code>speed</code> pixels in the given direction, ignoring walls.
+     *
+     * @param direction the direction to move in
+     * @param speed     the distance to move, in pixels
+     * @return the index of the tile after moving
+     */
+    protected int getTileIndexAfter(@NotNull Direction direction, double speed) {
+        if (fixedPoint) {
+            int delta = toSubpixels(speed);
+            int x = (fixedX + direction.getDx() * delta) / SUBPIXELS / Maze.TILE_SIZE;
+            int y = (fixedY + direction.getDy() * delta) / SUBPIXELS / Maze.TILE_SIZE;
+            return maze.getTileIndex(x, y);
+        }
+
+        int x = (int) (position.x() + direction.getDx() * speed) / Maze.TILE_SIZE;
+        int y = (int) (position.y() + direction.getDy() * speed) / Maze.TILE_SIZE;
+        return maze.getTileIndex(x, y);
     }
 
     /**
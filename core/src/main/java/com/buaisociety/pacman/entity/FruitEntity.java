@@ -3,24 +3,27 @@ package com.buaisociety.pacman.entity;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.buaisociety.pacman.LevelSpec;
 import com.buaisociety.pacman.entity.behavior.Behavior;
 import com.buaisociety.pacman.maze.Maze;
 import com.buaisociety.pacman.sprite.CutoutSpriteSheet;
 import com.buaisociety.pacman.sprite.GrayscaleSpriteSheet;
 import com.buaisociety.pacman.sprite.Particle;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2d;
 import org.joml.Vector2i;
 
-import java.util.concurrent.ThreadLocalRandom;
+import java.nio.ByteBuffer;
 
 public class FruitEntity extends Entity {
 
-    public static @NotNull CutoutSpriteSheet fruitSpriteShare = new CutoutSpriteSheet(new Texture("sprites/fruit-sprite.png"), 16);
-    public static @NotNull GrayscaleSpriteSheet bonusSpriteShare = new GrayscaleSpriteSheet(new Texture("sprites/bonus-points-sprite.png"), new Vector2i(8 * 4, 8 * 2));
+    // Shared between all fruits, created on the render thread when first needed
+    private static @Nullable CutoutSpriteSheet fruitSpriteShare;
+    private static @Nullable GrayscaleSpriteSheet bonusSpriteShare;
 
-    private final @NotNull CutoutSpriteSheet fruitSprite;
-    private final @NotNull GrayscaleSpriteSheet bonusSprite;
+    private @Nullable CutoutSpriteSheet fruitSprite;
+    private @Nullable GrayscaleSpriteSheet bonusSprite;
     private final int fruitTileX;
     private int ticksLeft;
     private boolean isRemove;
@@ -29,22 +32,53 @@ public class FruitEntity extends Entity {
         super(maze, EntityType.FRUIT);
         setPosition(config.spawnPixel);
 
-        fruitTileX = switch (maze.getLevelManager().getLevel()) {
-            case 1 -> 0;
-            case 2 -> 1;
-            case 3, 4 -> 2;
-            case 5, 6 -> 3;
-            case 7, 8 -> 4;
-            case 9, 10 -> 5;
-            case 11, 12 -> 6;
-            default -> 7;
-        };
+        fruitTileX = maze.getLevelSpec().getFruitSpriteIndex();
 
         this.fruitSprite = config.fruitSprite;
         this.bonusSprite = config.bonusSprite;
         this.ticksLeft = config.ticksLeft;
     }
 
+    /**
+     * Returns the fruit sprite sheet shared by all fruits, creating it if
+     * needed. This method creates textures, so it may only be called from the
+     * render thread.
+     *
+     * @return the shared fruit sprite sheet
+     */
+    public static @NotNull CutoutSpriteSheet getFruitSpriteShare() {
+        if (fruitSpriteShare == null)
+            fruitSpriteShare = new CutoutSpriteSheet(new Texture("sprites/fruit-sprite.png"), 16);
+        return fruitSpriteShare;
+    }
+
+    /**
+     * Returns the bonus points sprite sheet shared by all fruits, creating it
+     * if needed. This method creates textures, so it may only be called from
+     * the render thread.
+     *
+     * @return the shared bonus points sprite sheet
+     */
+    public static @NotNull GrayscaleSpriteSheet getBonusSpriteShare() {
+        if (bonusSpriteShare == null)
+            bonusSpriteShare = new GrayscaleSpriteSheet(new Texture("sprites/bonus-points-sprite.png"), new Vector2i(8 * 4, 8 * 2));
+        return bonusSpriteShare;
+    }
+
+    @Override
+    public void saveState(@NotNull ByteBuffer buffer) {
+        super.saveState(buffer);
+        buffer.putInt(ticksLeft);
+        buffer.put((byte) (isRemove ? 1 : 0));
+    }
+
+    @Override
+    public void loadState(@NotNull ByteBuffer buffer) {
+        super.loadState(buffer);
+        ticksLeft = buffer.getInt();
+        isRemove = buffer.get() != 0;
+    }
+
     /**
      * Returns true if the entity should be removed from the game (permanent death).
      *
@@ -90,33 +124,17 @@ public class FruitEntity extends Entity {
             isRemove = true;
         }
 
-        Vector2i pacmanTile = maze.getPacman().getTilePosition();
-        if (pacmanTile.equals(getTilePosition())) {
+        if (maze.getPacman().getTileIndex() == getTileIndex()) {
             isRemove = true;
 
-            int score = switch (maze.getLevelManager().getLevel()) {
-                case 1 -> 100;
-                case 2 -> 300;
-                case 3, 4 -> 500;
-                case 5, 6 -> 700;
-                case 7, 8 -> 1000;
-                case 9, 10 -> 2000;
-                case 11, 12 -> 3000;
-                default -> 5000;
-            };
-
-            int spriteX = switch (score) {
-                case 100 -> 0;
-                case 300 -> 2;
-                case 500 -> 4;
-                case 700 -> 5;
-                case 1000 -> 7;
-                case 2000 -> 9;
-                case 3000 -> 10;
-                default -> 11;
-            };
-
-            maze.getLevelManager().incrementScore(score);
+            LevelSpec spec = maze.getLevelSpec();
+            int spriteX = spec.getFruitBonusSpriteIndex();
+            maze.getLevelManager().incrementScore(spec.getFruitScore());
+
+            // Fruits that were never rendered have no sprites to show the bonus with
+            if (bonusSprite == null)
+                return;
+
             Particle particle = new Particle(
                 bonusSprite,
                 new Vector2i(spriteX, 0),
@@ -135,6 +153,11 @@ public class FruitEntity extends Entity {
      */
     @Override
     public void render(@NotNull SpriteBatch batch) {
+        if (fruitSprite == null)
+            fruitSprite = getFruitSpriteShare();
+        if (bonusSprite == null)
+            bonusSprite = getBonusSpriteShare();
+
         int pixelX = (int) position.x() - fruitSprite.getTileSize().x() / 2 + 1;
         int pixelY = (int) position.y() - fruitSprite.getTileSize().y() / 2 + 1;
         fruitSprite.setCurrentTile(fruitTileX, 0);
@@ -146,17 +169,17 @@ public class FruitEntity extends Entity {
      */
     @Override
     public void dispose() {
-        if (fruitSprite != fruitSpriteShare)
+        if (fruitSprite != null && fruitSprite != fruitSpriteShare)
             fruitSprite.dispose();
-        if (bonusSprite != bonusSpriteShare)
+        if (bonusSprite != null && bonusSprite != bonusSpriteShare)
             bonusSprite.dispose();
     }
 
 
     public static class Config {
         public @NotNull Vector2d spawnPixel = new Vector2d();
-        public @NotNull CutoutSpriteSheet fruitSprite = fruitSpriteShare;
-        public @NotNull GrayscaleSpriteSheet bonusSprite = bonusSpriteShare;
-        public int ticksLeft = ThreadLocalRandom.current().nextInt(9 * 60, 10 * 60);
+        public @Nullable CutoutSpriteSheet fruitSprite = null;  // null to use the shared sprite
+        public @Nullable GrayscaleSpriteSheet bonusSprite = null;  // null to use the shared sprite
+        public int ticksLeft = 9 * 60;  // randomized by Maze#spawnFruit
     }
 }
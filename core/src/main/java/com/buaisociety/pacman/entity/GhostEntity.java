@@ -3,6 +3,7 @@ package com.buaisociety.pacman.entity;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.buaisociety.pacman.LevelSpec;
 import com.buaisociety.pacman.entity.behavior.AggressiveChaseBehavior;
 import com.buaisociety.pacman.entity.behavior.Behavior;
 import com.buaisociety.pacman.entity.behavior.RandomDirectionBehavior;
@@ -11,19 +12,18 @@ import com.buaisociety.pacman.maze.Maze;
 import com.buaisociety.pacman.maze.Tile;
 import com.buaisociety.pacman.maze.TileState;
 import com.buaisociety.pacman.sprite.GrayscaleSpriteSheet;
-import com.buaisociety.pacman.util.NumberUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2d;
 import org.joml.Vector2i;
 
+import java.nio.ByteBuffer;
+
 public class GhostEntity extends Entity {
 
-    private static final int[] ELROY_PELLETS = {
-        20, 30, 40, 40, 40, 50, 50, 50, 60, 60, 60, 80, 80, 80, 100, 100, 100, 100, 120, 120, 120
-    };
+    private static final GhostState[] GHOST_STATES = GhostState.values();
 
-    private final GrayscaleSpriteSheet spriteSheet;
+    private @Nullable GrayscaleSpriteSheet spriteSheet;
     private int animationFrame;
 
     private final boolean isElroy;  // Blinky becomes "Elroy" and moves faster
@@ -72,8 +72,8 @@ public class GhostEntity extends Entity {
     @Override
     public void reset() {
         // Set twice to update lastPosition
-        setPosition(new Vector2d(spawnPixel));
-        setPosition(new Vector2d(spawnPixel));
+        setPosition(spawnPixel.x, spawnPixel.y);
+        setPosition(spawnPixel.x, spawnPixel.y);
         direction = spawnDirection;
         released = spawnReleased;
 
@@ -81,6 +81,27 @@ public class GhostEntity extends Entity {
         nextDirection = null;
     }
 
+    @Override
+    public void saveState(@NotNull ByteBuffer buffer) {
+        super.saveState(buffer);
+        buffer.putInt(animationFrame);
+        buffer.putInt(localDotCounter);
+        buffer.put((byte) (released ? 1 : 0));
+        buffer.put((byte) state.ordinal());
+        buffer.put((byte) (nextDirection == null ? -1 : nextDirection.ordinal()));
+    }
+
+    @Override
+    public void loadState(@NotNull ByteBuffer buffer) {
+        super.loadState(buffer);
+        animationFrame = buffer.getInt();
+        localDotCounter = buffer.getInt();
+        released = buffer.get() != 0;
+        state = GHOST_STATES[buffer.get()];
+        int next = buffer.get();
+        nextDirection = next < 0 ? null : DIRECTIONS[next];
+    }
+
     public @NotNull Vector2i getScatterTile() {
         return scatterTile;
     }
@@ -138,56 +159,31 @@ public class GhostEntity extends Entity {
 
     @Override
     public double getSpeed() {
-        int level = maze.getLevelManager().getLevel();
-
-        // Allow a handicap to delay the speed changes per-level
-        // makes the game easier
-        level = Math.max(1, level - maze.getLevelManager().getConfig().handicap);
+        LevelSpec spec = maze.getLevelSpec();
 
         // The speed of the ghost changes based on the state
         if (state == GhostState.EATEN) {
-            return BASE_SPEED * 2.0;
+            return spec.getGhostEatenSpeed();
         } else if (state == GhostState.FRIGHTENED) {
-            return BASE_SPEED * switch (level) {
-                case 1 -> 0.50;
-                case 2, 3, 4 -> 0.55;
-                default -> 0.60;
-            };
+            return spec.getGhostFrightenedSpeed();
         }
 
         // When entering a tunnel, the ghosts suffer a severe speed penalty
-        if (maze.getTile(getTilePosition()).getState() == TileState.TUNNEL) {
-            return BASE_SPEED * switch (level) {
-                case 1 -> 0.40;
-                case 2, 3, 4 -> 0.45;
-                default -> 0.50;
-            };
+        if (maze.getTileByIndex(getTileIndex()).getState() == TileState.TUNNEL) {
+            return spec.getGhostTunnelSpeed();
         }
 
         // Blinky may become "Elroy" and move faster when there are few pellets left
         if (isElroy) {
-            int elroyPellets = ELROY_PELLETS[Math.min(level, ELROY_PELLETS.length - 1)];
-            if (maze.getPelletsRemaining() < elroyPellets / 2) {
-                return BASE_SPEED * switch (level) {
-                    case 1 -> 0.85;
-                    case 2, 3, 4 -> 0.95;
-                    default -> 1.05;
-                };
-            } else if (maze.getPelletsRemaining() < elroyPellets) {
-                return BASE_SPEED * switch (level) {
-                    case 1 -> 0.80;
-                    case 2, 3, 4 -> 0.90;
-                    default -> 1.00;
-                };
+            if (maze.getPelletsRemaining() < spec.getElroy2Pellets()) {
+                return spec.getElroy2Speed();
+            } else if (maze.getPelletsRemaining() < spec.getElroy1Pellets()) {
+                return spec.getElroy1Speed();
             }
         }
 
         // Just normal speeds
-        return BASE_SPEED * switch (level) {
-            case 1 -> 0.75;
-            case 2, 3, 4 -> 0.85;
-            default -> 0.95;
-        };
+        return spec.getGhostSpeed();
     }
 
     @Override
@@ -207,7 +203,7 @@ public class GhostEntity extends Entity {
     @Override
     public void update() {
         super.update();
-        Tile current = maze.getTile(getTilePosition());
+        Tile current = maze.getTileByIndex(getTileIndex());
         double speed = getSpeed();
 
         if (ticksAlive % 5 == 0)
@@ -221,8 +217,7 @@ public class GhostEntity extends Entity {
             // If moving forward would cause the ghost to leave it's current tile, then
             // we need to change direction.
             speed = 0.5;
-            Tile next = maze.getTile(maze.toTileCoords(getPosition().add(direction.getDx() * speed, direction.getDy() * speed)));
-            if (!current.equals(next)) {
+            if (current.getIndex() != getTileIndexAfter(direction, speed)) {
                 direction = direction.behind();
             }
 
@@ -238,16 +233,14 @@ public class GhostEntity extends Entity {
 
             // When centered on the x-axis, move up to get out
             double dx = position.x() - centerX;
-            if (Math.abs(dx) < 0.01) {
+            if (isFixedPoint() ? dx == 0 : Math.abs(dx) < 0.01) {
                 direction = Direction.UP;
                 move(direction, 0.5, false); //  TODO: use moveTowards so we don't overshoot
                 return;
             }
 
             direction = dx > 0 ? Direction.LEFT : Direction.RIGHT;
-            double x = NumberUtil.moveTowards(position.x(), centerX, 0.5);
-            double y = position.y();
-            setPosition(new Vector2d(x, y));
+            moveTowardsX(centerX, 0.5);
             return;
         }
 
@@ -256,10 +249,8 @@ public class GhostEntity extends Entity {
             Tile down = current.getNeighbor(Direction.DOWN);
             if (down.getState() == TileState.GHOST_PEN) {
                 // move towards the center of the board, on the x-axis
-                Vector2d position = getPosition();
                 int centerX = maze.getPixelDimensions().x() / 2;
-                position.x = NumberUtil.moveTowards(position.x(), centerX, speed);
-                setPosition(position);
+                moveTowardsX(centerX, speed);
 
                 // If we are centered, move down
                 if (position.x() == centerX) {
@@ -285,15 +276,15 @@ public class GhostEntity extends Entity {
 
         // Basic collision detection
         PacmanEntity pacman = maze.getPacman();
-        if (pacman.getTilePosition().equals(getTilePosition())) {
+        if (pacman.getTileIndex() == getTileIndex()) {
             maze.eatGhost(pacman, this);
         }
 
         // In ghost may only change direction when it enters an intersection.
         // Since ghosts may not reverse direction, we simply check when we enter
         // a new tile.
-        Tile last = maze.getTile(maze.toTileCoords(lastPosition));
-        if (!last.equals(current) || nextDirection == null) {
+        int last = maze.getTileIndex((int) lastPosition.x() / Maze.TILE_SIZE, (int) lastPosition.y() / Maze.TILE_SIZE);
+        if (last != current.getIndex() || nextDirection == null) {
             Behavior behavior = getBehavior();
             nextDirection = behavior.getDirection(this);
         }
@@ -301,11 +292,10 @@ public class GhostEntity extends Entity {
         // When we are locked into a new direction, we should move towards the center
         // of the tile, then move in that direction.
         if (nextDirection != direction) {
-            Vector2d center = new Vector2d(current.getCenterPixel());
-            if (!position.equals(center, 0.1)) {
-                double x = NumberUtil.moveTowards(position.x(), center.x(), speed);
-                double y = NumberUtil.moveTowards(position.y(), center.y(), speed);
-                setPosition(new Vector2d(x, y));
+            int centerX = current.getCenterX();
+            int centerY = current.getCenterY();
+            if (!isOnPixel(centerX, centerY)) {
+                moveTowards(centerX, centerY, speed);
                 return;
             }
 
@@ -347,6 +337,8 @@ public class GhostEntity extends Entity {
             spriteY = 1;
         }
 
+        if (spriteSheet == null)
+            spriteSheet = new GrayscaleSpriteSheet(new Texture("sprites/ghost-sprite.png"), 20);
         spriteSheet.setColors(colors);
         spriteSheet.setCurrentTile(spriteX, spriteY);
         int pixelX = (int) position.x() - spriteSheet.getTileSize().x() / 2 + 1;
@@ -356,13 +348,14 @@ public class GhostEntity extends Entity {
 
     @Override
     public void dispose() {
-        spriteSheet.dispose();
+        if (spriteSheet != null)
+            spriteSheet.dispose();
     }
 
 
     public static class Config {
         public boolean isElroy = false;
-        public @NotNull GrayscaleSpriteSheet spriteSheet = new GrayscaleSpriteSheet(new Texture("sprites/ghost-sprite.png"), 20);
+        public @Nullable GrayscaleSpriteSheet spriteSheet = null;  // null to create when first rendered
         public @NotNull Behavior chase = new AggressiveChaseBehavior();
         public @NotNull Vector2i scatterTile = new Vector2i();
         public @NotNull Vector2i spawnPixel = new Vector2i();
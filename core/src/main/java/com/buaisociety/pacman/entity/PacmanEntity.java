@@ -3,6 +3,7 @@ package com.buaisociety.pacman.entity;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.buaisociety.pacman.LevelSpec;
 import com.buaisociety.pacman.entity.behavior.AggressiveChaseBehavior;
 import com.buaisociety.pacman.entity.behavior.Behavior;
 import com.buaisociety.pacman.maze.Maze;
@@ -10,12 +11,14 @@ import com.buaisociety.pacman.maze.Tile;
 import com.buaisociety.pacman.maze.TileState;
 import com.buaisociety.pacman.sprite.GrayscaleSpriteSheet;
 import org.jetbrains.annotations.NotNull;
-import org.joml.Vector2d;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2i;
 
+import java.nio.ByteBuffer;
+
 public class PacmanEntity extends Entity {
 
-    private final GrayscaleSpriteSheet spriteSheet;
+    private @Nullable GrayscaleSpriteSheet spriteSheet;
     private int animationFrame;
 
     private final @NotNull Vector2i spawnPixel;
@@ -32,7 +35,6 @@ public class PacmanEntity extends Entity {
 
         // This sprite sheet is 3x4 tiled sprite sheet, each tile is 20x20 pixels
         this.spriteSheet = config.spriteSheet;
-        this.spriteSheet.setColors(Color.CLEAR, Color.YELLOW);
     }
 
     @Override
@@ -41,38 +43,30 @@ public class PacmanEntity extends Entity {
         freezeTicks = 0;
         isAlive = true;
 
-        setPosition(new Vector2d(spawnPixel));
+        setPosition(spawnPixel.x, spawnPixel.y);
         this.direction = Direction.UP;
     }
 
+    @Override
+    public void saveState(@NotNull ByteBuffer buffer) {
+        super.saveState(buffer);
+        buffer.putInt(animationFrame);
+        buffer.putInt(freezeTicks);
+        buffer.put((byte) (isAlive ? 1 : 0));
+    }
+
+    @Override
+    public void loadState(@NotNull ByteBuffer buffer) {
+        super.loadState(buffer);
+        animationFrame = buffer.getInt();
+        freezeTicks = buffer.getInt();
+        isAlive = buffer.get() != 0;
+    }
+
     @Override
     public double getSpeed() {
-        // These constants are taken straight out of the Pacman game
-        int level = maze.getLevelManager().getLevel();
-
-        // Allow a handicap to delay the speed changes per-level
-        // makes the game easier
-        level = Math.max(1, level - maze.getLevelManager().getConfig().handicap);
-
-        if (maze.getFrightenedTimer() > 0) {
-            if (level >= 5) {
-                return BASE_SPEED * 1.00;
-            } else if (level >= 2) {
-                return BASE_SPEED * 0.95;
-            } else {
-                return BASE_SPEED * 0.90;
-            }
-        } else {
-            if (level >= 21) {
-                return BASE_SPEED * 0.90;
-            } else if (level >= 5) {
-                return BASE_SPEED * 1.00;
-            } else if (level >= 2) {
-                return BASE_SPEED * 0.90;
-            } else {
-                return BASE_SPEED * 0.80;
-            }
-        }
+        LevelSpec spec = maze.getLevelSpec();
+        return maze.getFrightenedTimer() > 0 ? spec.getPacmanFrightenedSpeed() : spec.getPacmanSpeed();
     }
 
     @Override
@@ -114,7 +108,7 @@ public class PacmanEntity extends Entity {
         }
 
         // Eat pellets
-        Tile tile = maze.getTile(maze.toTileCoords(position));
+        Tile tile = maze.getTileByIndex(getTileIndex());
         TileState pellet = maze.eatPellet(this, tile);
         if (pellet == TileState.PELLET) {
             freezeTicks += 1;
@@ -127,6 +121,10 @@ public class PacmanEntity extends Entity {
     public void render(@NotNull SpriteBatch batch) {
         behavior.render(batch);
 
+        if (spriteSheet == null)
+            spriteSheet = new GrayscaleSpriteSheet(new Texture("sprites/pacman-sprite.png"), 20);
+        spriteSheet.setColors(Color.CLEAR, Color.YELLOW);
+
         // Render the current tile of the sprite sheet
         switch (animationFrame % 4) {
             case 0 -> spriteSheet.setCurrentTile(0, direction.ordinal());
@@ -140,13 +138,14 @@ public class PacmanEntity extends Entity {
 
     @Override
     public void dispose() {
-        spriteSheet.dispose();
+        if (spriteSheet != null)
+            spriteSheet.dispose();
     }
 
 
     public static class Config {
         public @NotNull Behavior behavior = new AggressiveChaseBehavior();
         public @NotNull Vector2i spawnPixel = new Vector2i();
-        public @NotNull GrayscaleSpriteSheet spriteSheet = new GrayscaleSpriteSheet(new Texture("sprites/pacman-sprite.png"), 20);
+        public @Nullable GrayscaleSpriteSheet spriteSheet = null;  // null to create when first rendered
     }
 }
@@ -0,0 +1,255 @@
+package com.buaisociety.pacman.entity.behavior;
+
+import com.buaisociety.pacman.ForwardModel;
+import com.buaisociety.pacman.GameManager;
+import com.buaisociety.pacman.entity.Direction;
+import com.buaisociety.pacman.entity.Entity;
+import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.util.GameRandom;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A pacman behavior that plans ahead with Monte Carlo Tree Search, instead of
+ * a neural network.
+ *
+ * <p>Each time pacman enters a new tile (or cannot keep going), the behavior
+ * copies the game into a {@link ForwardModel} and searches: every edge of the
+ * tree holds a direction for {@link Config#ticksPerAction} ticks, children are
+ * picked with UCT, and leaves are rolled out with random turns until
+ * {@link Config#maxDepth} actions. A simulation scores the points gained, and
+ * is penalized when pacman loses a life. The search stops after
+ * {@link Config#maxIterations} simulations or when the
+ * {@link Config#timeBudgetNanos time budget} runs out, whichever comes first.
+ *
+ * <p>With more than 1 {@link Config#threads thread}, every thread searches its
+ * own tree on its own model (root parallelization), and the visits of the
+ * root actions are summed. Models are kept between decisions, so a decision
+ * allocates little more than its tree.
+ */
+public class MctsPacmanBehavior implements Behavior {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final @NotNull Config config;
+    private final @NotNull ForwardModel[] models;
+    private final @NotNull GameRandom[] randoms;
+
+    private @Nullable Direction planned;
+    private int plannedTile = -1;
+
+    public MctsPacmanBehavior() {
+        this(new Config());
+    }
+
+    public MctsPacmanBehavior(@NotNull Config config) {
+        if (config.threads < 1)
+            throw new IllegalArgumentException("Need at least 1 thread, got " + config.threads);
+
+        this.config = config;
+        this.models = new ForwardModel[config.threads];
+        this.randoms = new GameRandom[config.threads];
+        for (int i = 0; i < config.threads; i++) {
+            models[i] = new ForwardModel();
+            randoms[i] = new GameRandom(config.seed + i);
+        }
+    }
+
+    @NotNull
+    @Override
+    public Direction getDirection(@NotNull Entity entity) {
+        // Only re-plan when something could have changed, e.g. at a new tile
+        int tile = entity.getTileIndex();
+        if (planned != null && tile == plannedTile && entity.canMove(planned))
+            return planned;
+
+        planned = plan(entity.getMaze().getLevelManager());
+        plannedTile = tile;
+        return planned;
+    }
+
+    private @NotNull Direction plan(@NotNull GameManager game) {
+        byte[] snapshot = game.snapshot();
+        long deadline = System.nanoTime() + config.timeBudgetNanos;
+        int iterations = Math.max(1, config.maxIterations / models.length);
+
+        // Every thread gets its own model, tree and random numbers
+        List<CompletableFuture<Node>> futures = new ArrayList<>(models.length - 1);
+        for (int i = 1; i < models.length; i++) {
+            int index = i;
+            models[i].setRoot(game, snapshot);
+            futures.add(CompletableFuture.supplyAsync(() -> search(index, iterations, deadline), ForkJoinPool.commonPool()));
+        }
+        models[0].setRoot(game, snapshot);
+        Node root = search(0, iterations, deadline);
+
+        int[] visits = new int[DIRECTIONS.length];
+        root.addRootVisits(visits);
+        for (CompletableFuture<Node> future : futures) {
+            future.join().addRootVisits(visits);
+        }
+
+        // The most visited action is the most robust choice
+        Direction best = game.getCurrentMaze().getPacman().getDirection();
+        int bestVisits = 0;
+        for (Direction direction : DIRECTIONS) {
+            if (visits[direction.ordinal()] > bestVisits) {
+                best = direction;
+                bestVisits = visits[direction.ordinal()];
+            }
+        }
+        return best;
+    }
+
+    private @NotNull Node search(int index, int iterations, long deadline) {
+        ForwardModel model = models[index];
+        GameRandom random = randoms[index];
+        Node root = new Node(null, null);
+
+        for (int i = 0; i < iterations; i++) {
+            if (i > 0 && System.nanoTime() > deadline)
+                break;
+
+            model.reset();
+            GameManager game = model.getGame();
+            int startScore = game.getScore();
+            int startLives = game.getExtraLives();
+            int startLevel = game.getLevel();
+
+            Node node = root;
+            int depth = 0;
+
+            // Selection: walk down fully expanded nodes
+            while (depth < config.maxDepth && !isTerminal(game, startLives, startLevel)) {
+                if (node.legal == null)
+                    node.legal = legalActions(model.getPacman());
+                if (node.legal.length == 0)
+                    break;
+
+                Node child = node.nextUntried();
+                if (child != null) {
+                    // Expansion: try 1 new action, then roll out from there
+                    model.step(child.action, config.ticksPerAction);
+                    node = child;
+                    depth++;
+                    break;
+                }
+
+                node = node.selectChild(config.exploration);
+                model.step(node.action, config.ticksPerAction);
+                depth++;
+            }
+
+            // Rollout: random turns, but no turning around
+            Direction direction = node.action != null ? node.action : model.getPacman().getDirection();
+            while (depth < config.maxDepth && !isTerminal(game, startLives, startLevel)) {
+                direction = randomAction(model.getPacman(), direction, random);
+                model.step(direction, config.ticksPerAction);
+                depth++;
+            }
+
+            double reward = game.getScore() - startScore;
+            if (game.getExtraLives() < startLives || game.isGameOver())
+                reward -= config.deathPenalty;
+            reward /= config.rewardScale;
+
+            for (Node n = node; n != null; n = n.parent) {
+                n.visits++;
+                n.value += reward;
+            }
+        }
+
+        return root;
+    }
+
+    private static boolean isTerminal(@NotNull GameManager game, int startLives, int startLevel) {
+        return game.getExtraLives() != startLives || game.getLevel() != startLevel || game.isGameOver();
+    }
+
+    private static @NotNull Direction[] legalActions(@NotNull PacmanEntity pacman) {
+        int count = 0;
+        Direction[] legal = new Direction[DIRECTIONS.length];
+        for (Direction direction : DIRECTIONS) {
+            if (pacman.canMove(direction))
+                legal[count++] = direction;
+        }
+        return count == legal.length ? legal : Arrays.copyOf(legal, count);
+    }
+
+    private static @NotNull Direction randomAction(@NotNull PacmanEntity pacman, @NotNull Direction current, @NotNull GameRandom random) {
+        int start = random.nextInt(DIRECTIONS.length);
+        for (int i = 0; i < DIRECTIONS.length; i++) {
+            Direction direction = DIRECTIONS[(start + i) % DIRECTIONS.length];
+            if (direction != current.behind() && pacman.canMove(direction))
+                return direction;
+        }
+        return current.behind();
+    }
+
+    /**
+     * A node in the search tree: the state reached by taking {@link #action}
+     * from the parent.
+     */
+    private static final class Node {
+        private final @Nullable Node parent;
+        private final @Nullable Direction action;
+        private @Nullable Direction[] legal;  // computed when the node is first reached
+        private final @NotNull Node[] children = new Node[DIRECTIONS.length];
+        private int expanded;
+        private int visits;
+        private double value;
+
+        private Node(@Nullable Node parent, @Nullable Direction action) {
+            this.parent = parent;
+            this.action = action;
+        }
+
+        private @Nullable Node nextUntried() {
+            if (legal == null || expanded == legal.length)
+                return null;
+
+            Node child = new Node(this, legal[expanded]);
+            children[expanded++] = child;
+            return child;
+        }
+
+        private @NotNull Node selectChild(double exploration) {
+            double logVisits = Math.log(visits);
+            Node best = children[0];
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < expanded; i++) {
+                Node child = children[i];
+                double score = child.value / child.visits + exploration * Math.sqrt(logVisits / child.visits);
+                if (score > bestScore) {
+                    best = child;
+                    bestScore = score;
+                }
+            }
+            return best;
+        }
+
+        private void addRootVisits(@NotNull int[] visits) {
+            for (int i = 0; i < expanded; i++) {
+                visits[children[i].action.ordinal()] += children[i].visits;
+            }
+        }
+    }
+
+    public static class Config {
+        public int threads = 1;  // threads > 1 search in parallel on the common pool
+        public int ticksPerAction = 8;  // roughly 1 tile
+        public int maxDepth = 12;  // actions per simulation
+        public int maxIterations = 2000;  // simulations per decision, split between the threads
+        public long timeBudgetNanos = 5_000_000L;  // per decision
+        public double exploration = 1.4;  // UCT exploration constant
+        public double deathPenalty = 2000;  // in points
+        public double rewardScale = 100;  // points per unit of reward
+        public long seed = 0;  // seeds the rollouts
+    }
+}
@@ -1,6 +1,4 @@
 package com.buaisociety.pacman.entity.behavior;
-import java.util.Map;
-import java.util.Optional;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -8,21 +6,56 @@ import org.jetbrains.annotations.Nullable;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.buaisociety.pacman.entity.Direction;
 import com.buaisociety.pacman.entity.Entity;
-import com.buaisociety.pacman.entity.FruitEntity;
 import com.buaisociety.pacman.entity.GhostEntity;
 import com.buaisociety.pacman.entity.GhostState;
 import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.maze.Maze;
 import com.buaisociety.pacman.maze.Pair;
 import com.buaisociety.pacman.maze.Searcher;
-import com.buaisociety.pacman.maze.Tile;
-import com.buaisociety.pacman.maze.TileState;
+import com.buaisociety.pacman.network.GenomeEvaluator;
+import com.buaisociety.pacman.network.InferenceBatch;
+import com.buaisociety.pacman.network.NetworkEvaluator;
 import com.cjcrafter.neat.Client;
 
+import java.util.function.DoubleConsumer;
+
+/**
+ * Moves pacman with the neural network of a NEAT {@link Client}.
+ *
+ * <p>By default, the genome of the client is compiled into a flat network by
+ * a {@link GenomeEvaluator}. The network is normally evaluated inside {@link #getDirection(Entity)}.
+ * When the behavior is bound to a row of an {@link InferenceBatch}, the
+ * {@link com.buaisociety.pacman.SimulationWorkers} instead sense the inputs
+ * of all games before the tick, and evaluate the networks together, so
+ * {@link #getDirection(Entity)} only has to read the outputs of its row.
+ *
+ * <p>The fitness of pacman is reported every tick. The simple constructor
+ * writes it to the score of the client; a client playing several games at
+ * once instead needs 1 fitness per game, so the other constructor reports it
+ * to any consumer.
+ */
 public class NeatPacmanBehavior implements Behavior {
 
-    private final @NotNull Client client;
+    public static final int INPUTS = 7;
+    public static final int OUTPUTS = 4;
+
+    // The number of values each input can take, see writeInputs and PolicyTable
+    public static final int[] INPUT_VALUES = {2, 2, 2, 2, 5, 2, 5};
+    private static final @NotNull Direction[] DIRECTIONS = Direction.values();
+
+    private final @NotNull NetworkEvaluator network;
+    private final @NotNull DoubleConsumer fitness;
+    private final @Nullable InferenceBatch batch;
+    private final int row;
+    private final @NotNull Searcher.SensorResult sensors = new Searcher.SensorResult();
+    private final @NotNull float[] inputs = new float[INPUTS];
+    private final @NotNull float[] outputs = new float[OUTPUTS];
     private @Nullable PacmanEntity pacman;
 
+    // Filled by writeInputs, together with the inputs
+    private @Nullable Direction closestPelletDirection;
+    private @Nullable Direction closestFruitDirection;
+
     // Score modifiers help us maintain "multiple pools" of points.
     // This is great for training, because we can take away points from
     // specific pools of points instead of subtracting from all.
@@ -32,7 +65,28 @@ public class NeatPacmanBehavior implements Behavior {
     Direction newDirection;
 
     public NeatPacmanBehavior(@NotNull Client client) {
-        this.client = client;
+        this(new GenomeEvaluator(client, INPUTS, OUTPUTS), fitness -> client.setScore((float) fitness), null, -1);
+    }
+
+    /**
+     * Creates a behavior that evaluates the given network, optionally as part
+     * of a batch.
+     *
+     * @param network the network of the client, with {@link #INPUTS} inputs
+     *                and {@link #OUTPUTS} outputs
+     * @param fitness receives the fitness of pacman every tick
+     * @param batch   the batch to evaluate the network in, or null to evaluate
+     *                it inline
+     * @param row     the row of the batch, usually the id of the game
+     */
+    public NeatPacmanBehavior(@NotNull NetworkEvaluator network, @NotNull DoubleConsumer fitness, @Nullable InferenceBatch batch, int row) {
+        this.network = network;
+        this.fitness = fitness;
+        this.batch = batch;
+        this.row = row;
+
+        if (batch != null)
+            batch.bind(row, this::writeInputs, network);
     }
 
     /**
@@ -78,24 +132,17 @@ public class NeatPacmanBehavior implements Behavior {
         }
         if (ghostNearby) {
             // If the ghost is frightened, move towards it; otherwise, move away
-            Optional<GhostEntity> frightenedGhost = pacman.getMaze().getEntities().stream()
-                .filter(e -> e instanceof GhostEntity)
-                .map(e -> (GhostEntity) e) // Cast to GhostEntity
-                .filter(ghost -> ghost.getState() == GhostState.FRIGHTENED)
-                .findFirst();
-            if (frightenedGhost.isPresent()) {
+            GhostEntity frightenedGhost = findGhost(pacman.getMaze(), GhostState.FRIGHTENED);
+            if (frightenedGhost != null) {
                 // Move towards the frightened ghost
-                Direction directionTowardsGhost = Searcher.getDirectionTo(pacman.getPosition(), frightenedGhost.get().getPosition());
+                Direction directionTowardsGhost = Searcher.getDirectionTo(pacman.getPosition(), frightenedGhost.getPosition());
                 newDirection = directionTowardsGhost; // Update newDirection to move towards the frightened ghost
             } else {
                 // Move away from the ghost
-                newDirection = Searcher.getDirectionAway(pacman.getPosition(), pacman.getMaze().getEntities().stream()
-                    .filter(e -> e instanceof GhostEntity)
-                    .map(e -> (GhostEntity) e) // Cast to GhostEntity
-                    .filter(ghost -> ghost.getState() == GhostState.CHASE) // Change to NORMAL state
-                    .findFirst()
-                    .orElseThrow(() -> new IllegalStateException("No normal ghost found"))
-                    .getPosition());
+                GhostEntity chasingGhost = findGhost(pacman.getMaze(), GhostState.CHASE);
+                if (chasingGhost == null)
+                    throw new IllegalStateException("No normal ghost found");
+                newDirection = Searcher.getDirectionAway(pacman.getPosition(), chasingGhost.getPosition());
             }
         }
 
@@ -103,101 +150,22 @@ public class NeatPacmanBehavior implements Behavior {
         // TODO: Make changes here to help with your training...
         // END OF SPECIAL TRAINING CONDITIONS
 
-        // We are going to use these directions a lot for different inputs. Get them all once for clarity and brevity
-        Direction forward = pacman.getDirection();
-        Direction left = pacman.getDirection().left();
-        Direction right = pacman.getDirection().right();
-        Direction behind = pacman.getDirection().behind();
-
-        // Input nodes 1, 2, 3, and 4 show if the pacman can move in the forward, left, right, and behind directions
-        boolean canMoveForward = pacman.canMove(forward);
-        boolean canMoveLeft = pacman.canMove(left);
-        boolean canMoveRight = pacman.canMove(right);
-        boolean canMoveBehind = pacman.canMove(behind);
-
-        // boolean if fruit exists or not
-        boolean fruitExists = false;
-        for (Entity mazeEntity : pacman.getMaze().getEntities()){
-            if (mazeEntity instanceof FruitEntity) {
-                fruitExists = true;
-            }
-        }
-
-        //BFS 
-        Tile currentTile = pacman.getMaze().getTile(pacman.getTilePosition());
-        Map<Direction, Searcher.SearchResult> nearestPellets = Searcher.findTileInAllDirections(currentTile, tile -> tile.getState() == TileState.PELLET);
-        Map<Direction, Searcher.SearchResult> nearestFruits = Searcher.findTileInAllDirections(currentTile, tile -> 
-            pacman.getMaze().getEntities().stream()
-                .anyMatch(e -> e instanceof FruitEntity && e.getTilePosition().equals(tile.getPosition()))
-        );
-
-        // Determine the direction with the closest pellet
-        Direction closestPelletDirection = null;
-        int closestPelletDistance = Integer.MAX_VALUE;
-
-        for (Map.Entry<Direction, Searcher.SearchResult> entry : nearestPellets.entrySet()) {
-            Searcher.SearchResult result = entry.getValue();
-            if (result != null && result.getDistance() < closestPelletDistance) {
-                closestPelletDistance = result.getDistance();
-                closestPelletDirection = entry.getKey();
-            }
-        }
-
-        // Determine the direction with the closest fruit
-        Direction closestFruitDirection = null;
-        int closestFruitDistance = Integer.MAX_VALUE;
-
-        for (Map.Entry<Direction, Searcher.SearchResult> entry : nearestFruits.entrySet()) {
-            Searcher.SearchResult result = entry.getValue();
-            if (result != null && result.getDistance() < closestFruitDistance) {
-                closestFruitDistance = result.getDistance();
-                closestFruitDirection = entry.getKey();
-            }
-        }
-
-        // BFS to find the nearest tunnel
-        Map<Direction, Searcher.SearchResult> nearestTunnels = Searcher.findTileInAllDirections(currentTile, tile -> tile.getState() == TileState.TUNNEL);
-
-        // Determine the direction with the closest tunnel
-        Direction closestTunnelDirection = null;
-        int closestTunnelDistance = Integer.MAX_VALUE;
-
-        for (Map.Entry<Direction, Searcher.SearchResult> entry : nearestTunnels.entrySet()) {
-            Searcher.SearchResult result = entry.getValue();
-            if (result != null && result.getDistance() < closestTunnelDistance) {
-                closestTunnelDistance = result.getDistance();
-                closestTunnelDirection = entry.getKey();
-            }
+        // Use the outputs the batch computed for this tick, if any
+        float[] outputs = this.outputs;
+        int offset = 0;
+        if (batch != null && batch.consume(row)) {
+            outputs = batch.getOutputs();
+            offset = batch.getOutputOffset(row);
+        } else {
+            writeInputs(inputs, 0);
+            network.evaluate(inputs, 0, outputs, 0);
         }
 
-        float[] inputs = new float[7]; // Adjust size based on the number of inputs
-        inputs[0] = canMoveForward ? 1f : 0f; // Forward
-        inputs[1] = canMoveLeft ? 1f : 0f;    // Left
-        inputs[2] = canMoveRight ? 1f : 0f;   // Right
-        inputs[3] = canMoveBehind ? 1f : 0f;  // Behind
-        inputs[4] = closestPelletDirection != null ? switch (closestPelletDirection) {
-            case UP -> 1f;
-            case LEFT -> 2f;
-            case RIGHT -> 3f;
-            case DOWN -> 4f;
-        } : 0f;
-        inputs[5] = fruitExists ? 1f : 0f;
-        inputs[6] = closestFruitDirection != null ? switch (closestFruitDirection) {
-            case UP -> 1f;
-            case LEFT -> 2f;
-            case RIGHT -> 3f;
-            case DOWN -> 4f;
-        } : 0f;
-
-        // Use the closest direction for the output
-        float[] outputs = client.getCalculator().calculate(inputs).join();
-
-
         int index = 0;
-        float max = outputs[0];
-        for (int i = 1; i < outputs.length; i++) {
-            if (outputs[i] > max) {
-                max = outputs[i];
+        float max = outputs[offset];
+        for (int i = 1; i < OUTPUTS; i++) {
+            if (outputs[offset + i] > max) {
+                max = outputs[offset + i];
                 index = i;
             }
         }
@@ -232,7 +200,7 @@ public class NeatPacmanBehavior implements Behavior {
             pacman.move(newDirection, 1.0, true);
         }
 
-        client.setScore(pacman.getMaze().getLevelManager().getScore() + scoreModifier);
+        fitness.accept(pacman.getMaze().getLevelManager().getScore() + scoreModifier);
         return newDirection;
 
         
@@ -248,6 +216,93 @@ public class NeatPacmanBehavior implements Behavior {
 
 
 
+    }
+
+    /**
+     * Senses the surroundings of pacman, and writes the {@link #INPUTS} inputs
+     * of the network starting at <code>inputs[offset]</code>. Also remembers
+     * the closest pellet and fruit directions for {@link #getDirection(Entity)}.
+     *
+     * <p>Besides the behavior itself, this is used to show the network's
+     * activations for the current state of the game. Those directions are
+     * sensed again before every decision, so sensing in between does not
+     * change what pacman does.
+     *
+     * @param inputs the array to write the inputs to
+     * @param offset the index of the first input
+     * @return false if pacman has not been seen yet
+     */
+    public boolean writeInputs(@NotNull float[] inputs, int offset) {
+        PacmanEntity pacman = this.pacman;
+        if (pacman == null)
+            return false;
+
+        // We are going to use these directions a lot for different inputs. Get them all once for clarity and brevity
+        Direction forward = pacman.getDirection();
+        Direction left = pacman.getDirection().left();
+        Direction right = pacman.getDirection().right();
+        Direction behind = pacman.getDirection().behind();
+
+        // Input nodes 1, 2, 3, and 4 show if the pacman can move in the forward, left, right, and behind directions
+        boolean canMoveForward = pacman.canMove(forward);
+        boolean canMoveLeft = pacman.canMove(left);
+        boolean canMoveRight = pacman.canMove(right);
+        boolean canMoveBehind = pacman.canMove(behind);
+
+        // boolean if fruit exists or not
+        boolean fruitExists = pacman.getMaze().getFruit() != null;
+
+        // Look for pellets, fruits, etc. in each direction (the pellet search
+        // also stops at fruits, so it uses whichever of the 2 is nearer)
+        Maze maze = pacman.getMaze();
+        Searcher.sense(maze, pacman.getTileIndex(), sensors);
+
+        // Determine the direction with the closest pellet
+        Direction closestPelletDirection = null;
+        int closestPelletDistance = Integer.MAX_VALUE;
+        for (Direction direction : DIRECTIONS) {
+            int pelletDistance = sensors.getDistance(Searcher.Target.PELLET, direction);
+            int fruitDistance = sensors.getDistance(Searcher.Target.FRUIT, direction);
+            int distance = pelletDistance == -1 ? fruitDistance : fruitDistance == -1 ? pelletDistance : Math.min(pelletDistance, fruitDistance);
+            if (distance != -1 && distance < closestPelletDistance) {
+                closestPelletDistance = distance;
+                closestPelletDirection = direction;
+            }
+        }
+
+        // Determine the direction with the closest fruit
+        Direction closestFruitDirection = sensors.getClosestDirection(Searcher.Target.FRUIT);
+
+        this.closestPelletDirection = closestPelletDirection;
+        this.closestFruitDirection = closestFruitDirection;
+
+        inputs[offset] = canMoveForward ? 1f : 0f;     // Forward
+        inputs[offset + 1] = canMoveLeft ? 1f : 0f;    // Left
+        inputs[offset + 2] = canMoveRight ? 1f : 0f;   // Right
+        inputs[offset + 3] = canMoveBehind ? 1f : 0f;  // Behind
+        inputs[offset + 4] = closestPelletDirection != null ? switch (closestPelletDirection) {
+            case UP -> 1f;
+            case LEFT -> 2f;
+            case RIGHT -> 3f;
+            case DOWN -> 4f;
+        } : 0f;
+        inputs[offset + 5] = fruitExists ? 1f : 0f;
+        inputs[offset + 6] = closestFruitDirection != null ? switch (closestFruitDirection) {
+            case UP -> 1f;
+            case LEFT -> 2f;
+            case RIGHT -> 3f;
+            case DOWN -> 4f;
+        } : 0f;
+        return true;
+    }
+
+    private static @Nullable GhostEntity findGhost(@NotNull Maze maze, @NotNull GhostState state) {
+        for (int i = 0; i < maze.getGhostCount(); i++) {
+            GhostEntity ghost = maze.getGhost(i);
+            if (ghost.getState() == state)
+                return ghost;
+        }
+        return null;
     }
 
     @Override
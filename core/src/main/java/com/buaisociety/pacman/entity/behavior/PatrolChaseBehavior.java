@@ -18,8 +18,9 @@ public class PatrolChaseBehavior implements TargetableBehavior {
     private @Nullable GhostEntity blinky;
 
     public @NotNull GhostEntity findBlinky(@NotNull Maze maze) {
-        for (Entity entity : maze.getEntities()) {
-            if (entity instanceof GhostEntity ghost && ghost.getBehavior(GhostState.CHASE) instanceof AggressiveChaseBehavior) {
+        for (int i = 0; i < maze.getGhostCount(); i++) {
+            GhostEntity ghost = maze.getGhost(i);
+            if (ghost.getBehavior(GhostState.CHASE) instanceof AggressiveChaseBehavior) {
                 return ghost;
             }
         }
@@ -2,11 +2,9 @@ package com.buaisociety.pacman.entity.behavior;
 
 import com.buaisociety.pacman.entity.Direction;
 import com.buaisociety.pacman.entity.Entity;
-import com.buaisociety.pacman.maze.Tile;
+import com.buaisociety.pacman.maze.Maze;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 /**
  * A behavior that randomly chooses a direction to move in. This is used by the
  * ghosts when they are in the frightened state.
@@ -18,7 +16,7 @@ public class RandomDirectionBehavior implements Behavior {
     @NotNull
     @Override
     public Direction getDirection(@NotNull Entity entity) {
-        int index = ThreadLocalRandom.current().nextInt(directions.length);
+        int index = entity.getMaze().getLevelManager().getRandom().nextInt(directions.length);
         Direction direction = directions[index];
 
         // Make sure that tile is passable
@@ -30,8 +28,8 @@ public class RandomDirectionBehavior implements Behavior {
     }
 
     public boolean isValidDirection(@NotNull Entity entity, @NotNull Direction direction) {
-        Tile current = entity.getMaze().getTile(entity.getTilePosition());
-        boolean isPassable = current.getNeighbor(direction).getState().isPassable();
+        Maze maze = entity.getMaze();
+        boolean isPassable = maze.isPassable(entity.getTileIndex(), direction);
         boolean isNotBehind = entity.getDirection().behind() != direction;
         return isPassable && isNotBehind;
     }
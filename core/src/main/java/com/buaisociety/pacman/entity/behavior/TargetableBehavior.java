@@ -3,9 +3,7 @@ package com.buaisociety.pacman.entity.behavior;
 import com.buaisociety.pacman.entity.Direction;
 import com.buaisociety.pacman.entity.Entity;
 import com.buaisociety.pacman.maze.Maze;
-import com.buaisociety.pacman.maze.Tile;
 import org.jetbrains.annotations.NotNull;
-import org.joml.RoundingMode;
 import org.joml.Vector2i;
 
 /**
@@ -30,18 +28,21 @@ public interface TargetableBehavior extends Behavior {
         Direction temp = null;
         int smallest = Integer.MAX_VALUE;
 
-        Tile current = entity.getMaze().getTile(entity.getTilePosition());
+        Maze maze = entity.getMaze();
+        int current = entity.getTileIndex();
+        int tileX = (int) (entity.getX() / Maze.TILE_SIZE);
+        int tileY = (int) (entity.getY() / Maze.TILE_SIZE);
         for (Direction direction : DIRECTIONS) {
             // Ghosts may not reverse direction
             if (entity.getDirection().behind() == direction)
                 continue;
 
-            Tile next = current.getNeighbor(direction);
-            if (!next.getState().isPassable())
+            if (!maze.isPassable(current, direction))
                 continue;
 
-            Vector2i location = new Vector2i(entity.getPosition().div(Maze.TILE_SIZE), RoundingMode.TRUNCATE).add(direction.asVector());
-            int distance = (int) location.distanceSquared(target);
+            int dx = tileX + direction.getDx() - target.x;
+            int dy = tileY + direction.getDy() - target.y;
+            int distance = dx * dx + dy * dy;
 
             if (distance <= smallest) {
                 smallest = distance;
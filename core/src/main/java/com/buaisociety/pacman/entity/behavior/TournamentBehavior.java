@@ -3,20 +3,37 @@ package com.buaisociety.pacman.entity.behavior;
 import com.buaisociety.pacman.entity.Direction;
 import com.buaisociety.pacman.entity.Entity;
 import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.network.CalculatorEvaluator;
+import com.buaisociety.pacman.network.NetworkEvaluator;
 import com.cjcrafter.neat.compute.Calculator;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class TournamentBehavior implements Behavior {
 
-    private final Calculator calculator;
+    private final @NotNull NetworkEvaluator network;
+    private final @NotNull float[] inputs;
+    private final @NotNull float[] outputs;
     private @Nullable PacmanEntity pacman;
 
     private int previousScore = 0;
     private int framesSinceScoreUpdate = 0;
 
     public TournamentBehavior(Calculator calculator) {
-        this.calculator = calculator;
+        this(new CalculatorEvaluator(calculator, NeatPacmanBehavior.INPUTS, NeatPacmanBehavior.OUTPUTS));
+    }
+
+    /**
+     * Creates a behavior that plays with the given network, e.g. a
+     * {@link com.buaisociety.pacman.network.GenomeEvaluator} for a compiled
+     * genome.
+     *
+     * @param network the network to play with
+     */
+    public TournamentBehavior(@NotNull NetworkEvaluator network) {
+        this.network = network;
+        this.inputs = new float[network.getInputCount()];
+        this.outputs = new float[network.getOutputCount()];
     }
 
     /**
@@ -49,10 +66,8 @@ public class TournamentBehavior implements Behavior {
 
         // TODO: Put all your code for info into the neural network here
 
-        float[] inputs = new float[] {
-            // TODO: Add your inputs here
-        };
-        float[] outputs = calculator.calculate(inputs).join();
+        // TODO: Add your inputs here, e.g. inputs[0] = pacman.canMove(pacman.getDirection()) ? 1f : 0f;
+        network.evaluate(inputs, 0, outputs, 0);
 
         // Chooses the maximum output as the direction to go... feel free to change this ofc!
         // Adjust this to whatever you used in the NeatPacmanBehavior.class
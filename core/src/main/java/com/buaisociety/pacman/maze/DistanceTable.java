@@ -0,0 +1,110 @@
+package com.buaisociety.pacman.maze;
+
+import com.buaisociety.pacman.entity.Direction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The shortest path distance (in tiles) between every pair of tiles in a
+ * maze, and the first step to take along that path.
+ *
+ * <p>Paths follow the same rules as movement: a step may only be taken into a
+ * {@link TileState#isPassable() passable} tile, and tiles on the edge of the
+ * maze wrap around to the other side (tunnels). A table is computed once per
+ * {@link MazeTemplate} (see {@link MazeTemplate#getDistanceTable()}), and is
+ * shared read-only by every maze of that level. Changes made to the tiles of a
+ * single maze are not reflected.
+ *
+ * <p>Tiles are identified by their index, <code>y * width + x</code>, see
+ * {@link Maze#getTileIndex(int, int)}.
+ */
+public final class DistanceTable {
+
+    /**
+     * The distance returned when no path exists between 2 tiles.
+     */
+    public static final int UNREACHABLE = -1;
+
+    private static final @NotNull Direction[] DIRECTIONS = Direction.values();
+
+    private final int size;
+    private final @NotNull short[] distances;  // [from * size + to]
+    private final @NotNull byte[] firstSteps;  // Direction ordinal, or -1
+
+    DistanceTable(@NotNull byte[] moveMasks, @NotNull int[] neighbors) {
+        this.size = moveMasks.length;
+        this.distances = new short[size * size];
+        this.firstSteps = new byte[size * size];
+
+        // Each source tile fills its own row, so rows can be computed in parallel
+        IntStream.range(0, size).parallel().forEach(from -> computeRow(moveMasks, neighbors, from));
+    }
+
+    private void computeRow(@NotNull byte[] moveMasks, @NotNull int[] neighbors, int from) {
+        int row = from * size;
+        Arrays.fill(distances, row, row + size, (short) UNREACHABLE);
+        Arrays.fill(firstSteps, row, row + size, (byte) -1);
+
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+        distances[row + from] = 0;
+        queue[tail++] = from;
+
+        while (head < tail) {
+            int current = queue[head++];
+            int mask = moveMasks[current];
+            for (Direction direction : DIRECTIONS) {
+                if ((mask & (1 << direction.ordinal())) == 0)
+                    continue;
+
+                int next = neighbors[current * DIRECTIONS.length + direction.ordinal()];
+                if (distances[row + next] != UNREACHABLE)
+                    continue;
+
+                distances[row + next] = (short) (distances[row + current] + 1);
+                firstSteps[row + next] = current == from ? (byte) direction.ordinal() : firstSteps[row + current];
+                queue[tail++] = next;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tiles in the maze.
+     *
+     * @return the number of tiles
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of steps on the shortest path between 2 tiles, or
+     * {@link #UNREACHABLE} if there is no path.
+     *
+     * @param from the index of the start tile
+     * @param to   the index of the destination tile
+     * @return the shortest path distance, in tiles
+     */
+    public int getDistance(int from, int to) {
+        return distances[from * size + to];
+    }
+
+    /**
+     * Returns the direction of the first step on the shortest path between 2
+     * tiles, or <code>null</code> if there is no path (or both tiles are the
+     * same). When several shortest paths exist, the first direction in
+     * {@link Direction#values()} order wins.
+     *
+     * @param from the index of the start tile
+     * @param to   the index of the destination tile
+     * @return the first step towards the destination, or null
+     */
+    public @Nullable Direction getFirstStep(int from, int to) {
+        int ordinal = firstSteps[from * size + to];
+        return ordinal < 0 ? null : DIRECTIONS[ordinal];
+    }
+}
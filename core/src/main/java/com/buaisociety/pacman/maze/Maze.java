@@ -6,6 +6,8 @@ import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.buaisociety.pacman.GameManager;
+import com.buaisociety.pacman.LevelSpec;
+import com.buaisociety.pacman.entity.Direction;
 import com.buaisociety.pacman.entity.Entity;
 import com.buaisociety.pacman.entity.EntityType;
 import com.buaisociety.pacman.entity.FruitEntity;
@@ -21,6 +23,7 @@ import com.buaisociety.pacman.sprite.GrayscaleSpriteSheet;
 import com.buaisociety.pacman.sprite.Particle;
 import com.buaisociety.pacman.sprite.TextSpriteSheet;
 import com.buaisociety.pacman.util.Disposable;
+import com.buaisociety.pacman.util.GameRandom;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2d;
@@ -28,7 +31,10 @@ import org.joml.Vector2dc;
 import org.joml.Vector2i;
 import org.joml.Vector2ic;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -58,17 +64,38 @@ public class Maze implements Disposable {
     };
     public static final int[] LEVEL_FRIGHT_TIMES = new int[]{360, 300, 240, 180, 120, 300, 120, 120, 60, 300, 120, 60, 60, 180, 60, 60, 0, 60, 0};
 
+    private static final TileState[] TILE_STATES = TileState.values();
+    private static final EntityType[] ENTITY_TYPES = EntityType.values();
+
 
     protected @NotNull GameManager gameManager;
-    protected @NotNull Sprite levelSprite;
-    protected @NotNull GrayscaleSpriteSheet pelletSprite;
-    protected @NotNull GrayscaleSpriteSheet powerPelletSprite;
-    protected @NotNull CutoutSpriteSheet fruitSprite;
-    protected @NotNull GrayscaleSpriteSheet bonusPointsSprite;
-    protected @NotNull Tile[][] tiles;
+    private final @NotNull LevelSpec levelSpec;
+    protected @NotNull String levelTexturePath;
+
+    // Sprites are created on the render thread the first time this maze is rendered
+    protected @Nullable Sprite levelSprite;
+    protected @Nullable GrayscaleSpriteSheet pelletSprite;
+    protected @Nullable GrayscaleSpriteSheet powerPelletSprite;
+    protected @Nullable CutoutSpriteSheet fruitSprite;
+    protected @Nullable GrayscaleSpriteSheet bonusPointsSprite;
+    protected final @NotNull MazeTemplate template;
+    private @NotNull byte[] layout;  // shared with the template until a wall/space/tunnel tile is changed
+    private final @NotNull long[] pellets;
+    private final @NotNull long[] powerPellets;
+    private final @NotNull int[] neighbors;
+    private @NotNull byte[] moveMasks;  // shared with the template, like the layout
+    private final @Nullable Tile[] tileViews;  // created when first requested
     protected int totalPellets;
     protected int pelletsRemaining;
     protected @NotNull List<Entity> entities;
+    private final @NotNull List<Entity> entitiesView;
+
+    // Typed indexes into the entities, kept in sync by addEntity/removeEntity
+    private @Nullable PacmanEntity pacman;
+    private @NotNull GhostEntity[] ghosts;
+    private int ghostCount;
+    private @Nullable FruitEntity fruit;
+    private final @NotNull byte[] occupancy;  // [tileIndex * ENTITY_TYPES.length + type]
     protected int ticks;
     protected int freezeTicks;
     private int gameStartTicks;
@@ -86,32 +113,28 @@ public class Maze implements Disposable {
 
     public Maze(
         @NotNull GameManager gameManager,
-        @NotNull Sprite levelSprite,
-        @NotNull TileState[][] tiles,
-        @NotNull Vector2i fruitSpawnPixel
+        @NotNull MazeTemplate template
     ) {
         this.gameManager = gameManager;
-        this.levelSprite = levelSprite;
-        this.tiles = new Tile[tiles.length][tiles[0].length];
-        for (int y = 0; y < tiles.length; y++) {
-            for (int x = 0; x < tiles[y].length; x++) {
-                this.tiles[y][x] = new Tile(this, new Vector2i(x, y), tiles[y][x]);
-            }
-        }
+        this.levelSpec = gameManager.getLevelSpec();
+        this.levelTexturePath = template.getLevelTexturePath();
+        this.template = template;
+        this.layout = template.getLayout();
+        this.pellets = template.copyPellets();
+        this.powerPellets = template.copyPowerPellets();
+        this.neighbors = template.getNeighbors();
+        this.moveMasks = template.getMoveMasks();
+        this.tileViews = new Tile[layout.length];
         this.entities = new ArrayList<>();
-        this.tileDimensions = new Vector2i(tiles[0].length, tiles.length);
+        this.entitiesView = Collections.unmodifiableList(entities);
+        this.ghosts = new GhostEntity[4];
+        this.occupancy = new byte[layout.length * ENTITY_TYPES.length];
+        this.tileDimensions = new Vector2i(template.getWidth(), template.getHeight());
         this.pixelDimensions = new Vector2i(tileDimensions).mul(TILE_SIZE);
-        this.fruitSpawnPixel = fruitSpawnPixel;
+        this.fruitSpawnPixel = new Vector2i(template.getFruitSpawnPixel());
         this.particles = new ArrayList<>();
         initTiles();
 
-        pelletSprite = new GrayscaleSpriteSheet(new Texture(Gdx.files.internal("sprites/pellet.png")), 8);
-        pelletSprite.setColors(Color.CLEAR, new Color(0xffb897ff));
-        powerPelletSprite = new GrayscaleSpriteSheet(new Texture(Gdx.files.internal("sprites/power-pellet.png")), 8);
-        powerPelletSprite.setColors(Color.CLEAR, new Color(0xffb897ff));
-        fruitSprite = new CutoutSpriteSheet(new Texture(Gdx.files.internal("sprites/fruit-sprite.png")), 16);
-        bonusPointsSprite = new GrayscaleSpriteSheet(new Texture(Gdx.files.internal("sprites/bonus-points-sprite.png")), new Vector2i(8 * 4, 8 * 2));
-
         // Start with chase so the first update flips it to scatter
         isGhostChase = true;
 
@@ -120,24 +143,42 @@ public class Maze implements Disposable {
     }
 
     /**
-     * Responsible for initializing the tiles array, and setting the initial variables of this Maze instance.
+     * Responsible for counting the pellets in the maze, and setting the initial variables of this Maze instance.
+     * Should be called again after pellets are added or removed outside of the game (e.g. by an event listener).
      */
     public void initTiles() {
-        if (tiles == null) {
-            throw new IllegalStateException("Tiles array must be initialized before calling initTiles()");
+        int count = 0;
+        for (int i = 0; i < pellets.length; i++) {
+            count += Long.bitCount(pellets[i]) + Long.bitCount(powerPellets[i]);
         }
 
-        pelletsRemaining = 0;
-        totalPellets = 0;
-        for (Tile[] row : tiles) {
-            for (Tile tile : row) {
-                TileState state = tile.getState();
-                if (state == TileState.PELLET || state == TileState.POWER_PELLET) {
-                    pelletsRemaining++;
-                    totalPellets++;
-                }
-            }
-        }
+        pelletsRemaining = count;
+        totalPellets = count;
+    }
+
+    /**
+     * Creates the textures needed to render this maze. Since textures require
+     * an OpenGL context, this is only called from {@link #render(SpriteBatch)}.
+     */
+    private void loadSprites() {
+        levelSprite = new Sprite(new Texture(Gdx.files.internal(levelTexturePath)));
+        pelletSprite = new GrayscaleSpriteSheet(new Texture(Gdx.files.internal("sprites/pellet.png")), 8);
+        pelletSprite.setColors(Color.CLEAR, new Color(0xffb897ff));
+        powerPelletSprite = new GrayscaleSpriteSheet(new Texture(Gdx.files.internal("sprites/power-pellet.png")), 8);
+        powerPelletSprite.setColors(Color.CLEAR, new Color(0xffb897ff));
+        fruitSprite = new CutoutSpriteSheet(new Texture(Gdx.files.internal("sprites/fruit-sprite.png")), 16);
+        bonusPointsSprite = new GrayscaleSpriteSheet(new Texture(Gdx.files.internal("sprites/bonus-points-sprite.png")), new Vector2i(8 * 4, 8 * 2));
+    }
+
+    /**
+     * Returns true if this maze has been rendered at least once, e.g. the
+     * sprites have been created. Purely visual effects, like particles, are
+     * skipped for mazes that are not rendered.
+     *
+     * @return true if the sprites for this maze have been created
+     */
+    public boolean isRendered() {
+        return bonusPointsSprite != null;
     }
 
     public void reset() {
@@ -147,6 +188,134 @@ public class Maze implements Disposable {
         }
     }
 
+    /**
+     * Writes the state of this maze that changes during a game (tiles, timers,
+     * entities) to the buffer, see {@link GameManager#snapshot()}. Particles
+     * are purely visual, and are not included.
+     *
+     * @param buffer the buffer to write to
+     */
+    public void saveState(@NotNull ByteBuffer buffer) {
+        buffer.putInt(ticks);
+        buffer.putInt(freezeTicks);
+        buffer.putInt(gameStartTicks);
+        buffer.putInt(totalPellets);
+        buffer.putInt(pelletsRemaining);
+        buffer.putInt(localChaseCounter);
+        buffer.putInt(frightenedTimer);
+        buffer.putInt(localNumGhostsEaten);
+        buffer.put((byte) (isGhostChase ? 1 : 0));
+        buffer.putInt(ghostChaseIndex);
+
+        for (int i = 0; i < pellets.length; i++) {
+            buffer.putLong(pellets[i]);
+            buffer.putLong(powerPellets[i]);
+        }
+
+        // The layout is only stored when it was changed from the template
+        boolean customLayout = layout != template.getLayout();
+        buffer.put((byte) (customLayout ? 1 : 0));
+        if (customLayout)
+            buffer.put(layout);
+
+        buffer.put((byte) (pacman != null ? 1 : 0));
+        if (pacman != null)
+            pacman.saveState(buffer);
+        buffer.putInt(ghostCount);
+        for (int i = 0; i < ghostCount; i++) {
+            ghosts[i].saveState(buffer);
+        }
+        buffer.put((byte) (fruit != null ? 1 : 0));
+        if (fruit != null)
+            fruit.saveState(buffer);
+    }
+
+    /**
+     * Reads the state written by {@link #saveState(ByteBuffer)}, replacing the
+     * current state of this maze. The state must come from a maze of the same
+     * level, with the same pacman and ghosts. A fruit is spawned or removed
+     * (without firing events) to match the state.
+     *
+     * @param buffer the buffer to read from
+     * @throws IllegalStateException if the entities do not match the state
+     */
+    public void loadState(@NotNull ByteBuffer buffer) {
+        ticks = buffer.getInt();
+        freezeTicks = buffer.getInt();
+        gameStartTicks = buffer.getInt();
+        totalPellets = buffer.getInt();
+        pelletsRemaining = buffer.getInt();
+        localChaseCounter = buffer.getInt();
+        frightenedTimer = buffer.getInt();
+        localNumGhostsEaten = buffer.getInt();
+        isGhostChase = buffer.get() != 0;
+        ghostChaseIndex = buffer.getInt();
+
+        for (int i = 0; i < pellets.length; i++) {
+            pellets[i] = buffer.getLong();
+            powerPellets[i] = buffer.getLong();
+        }
+
+        if (buffer.get() != 0) {
+            if (layout == template.getLayout())
+                layout = new byte[layout.length];
+            buffer.get(layout);
+            if (moveMasks == template.getMoveMasks())
+                moveMasks = new byte[moveMasks.length];
+            for (int i = 0; i < moveMasks.length; i++) {
+                moveMasks[i] = MazeTemplate.computeMoveMask(layout, neighbors, i);
+            }
+        } else {
+            layout = template.getLayout();
+            moveMasks = template.getMoveMasks();
+        }
+
+        boolean hasPacman = buffer.get() != 0;
+        if (hasPacman != (pacman != null))
+            throw new IllegalStateException("Snapshot " + (hasPacman ? "has" : "does not have") + " a pacman, but the maze " + (hasPacman ? "does not" : "does"));
+        if (pacman != null)
+            pacman.loadState(buffer);
+
+        int savedGhosts = buffer.getInt();
+        if (savedGhosts != ghostCount)
+            throw new IllegalStateException("Snapshot has " + savedGhosts + " ghosts, but the maze has " + ghostCount);
+        for (int i = 0; i < ghostCount; i++) {
+            ghosts[i].loadState(buffer);
+        }
+
+        if (buffer.get() != 0) {
+            if (fruit == null) {
+                FruitEntity.Config config = new FruitEntity.Config();
+                config.spawnPixel = new Vector2d(fruitSpawnPixel);
+                addEntity(new FruitEntity(this, config));
+            }
+            fruit.loadState(buffer);
+        } else if (fruit != null) {
+            removeEntity(fruit);
+        }
+
+        particles.clear();
+    }
+
+    /**
+     * Returns the shared, immutable data of the level this maze was created from.
+     *
+     * @return the template of this maze
+     */
+    public @NotNull MazeTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * Returns the rules of the level this maze is played on, built when the
+     * level started.
+     *
+     * @return the rules of the current level
+     */
+    public @NotNull LevelSpec getLevelSpec() {
+        return levelSpec;
+    }
+
     public @NotNull GameManager getLevelManager() {
         return gameManager;
     }
@@ -156,12 +325,139 @@ public class Maze implements Disposable {
     }
 
     public @NotNull PacmanEntity getPacman() {
-        for (Entity entity : entities) {
-            if (entity instanceof PacmanEntity) {
-                return (PacmanEntity) entity;
+        if (pacman == null)
+            throw new IllegalStateException("Pacman not found in maze");
+        return pacman;
+    }
+
+    /**
+     * Returns true if pacman has been added to this maze.
+     *
+     * @return true if the maze has a pacman
+     */
+    public boolean hasPacman() {
+        return pacman != null;
+    }
+
+    /**
+     * Returns the number of ghosts in the maze.
+     *
+     * @return the number of ghosts
+     */
+    public int getGhostCount() {
+        return ghostCount;
+    }
+
+    /**
+     * Returns the ghost at the given index, in the order the ghosts were added.
+     *
+     * @param index the index of the ghost, less than {@link #getGhostCount()}
+     * @return the ghost
+     */
+    public @NotNull GhostEntity getGhost(int index) {
+        if (index < 0 || index >= ghostCount)
+            throw new IndexOutOfBoundsException("Ghost " + index + " out of bounds for " + ghostCount + " ghosts");
+        return ghosts[index];
+    }
+
+    /**
+     * Returns the fruit currently in the maze, or <code>null</code> if there
+     * is none.
+     *
+     * @return the fruit, or null
+     */
+    public @Nullable FruitEntity getFruit() {
+        return fruit;
+    }
+
+    /**
+     * Returns the number of entities of the given type in the tile with the
+     * given index.
+     *
+     * @param tileIndex the index of the tile
+     * @param type      the type of entity to count
+     * @return the number of entities of that type in the tile
+     */
+    public int countEntities(int tileIndex, @NotNull EntityType type) {
+        return occupancy[tileIndex * ENTITY_TYPES.length + type.ordinal()];
+    }
+
+    /**
+     * Adds an entity to the maze. A maze holds at most 1 pacman, and at most
+     * 1 fruit: adding a fruit removes the current fruit (if any).
+     *
+     * @param entity the entity to add
+     * @throws IllegalStateException if adding a second pacman
+     */
+    public void addEntity(@NotNull Entity entity) {
+        if (entity instanceof PacmanEntity newPacman) {
+            if (pacman != null)
+                throw new IllegalStateException("Maze already has a pacman");
+            pacman = newPacman;
+        } else if (entity instanceof GhostEntity ghost) {
+            if (ghostCount == ghosts.length)
+                ghosts = Arrays.copyOf(ghosts, ghostCount * 2);
+            ghosts[ghostCount++] = ghost;
+        } else if (entity instanceof FruitEntity newFruit) {
+            if (fruit != null)
+                removeEntity(fruit);
+            fruit = newFruit;
+        }
+
+        entities.add(entity);
+        occupancy[entity.getTileIndex() * ENTITY_TYPES.length + entity.getType().ordinal()]++;
+    }
+
+    private void removeEntity(@NotNull Entity entity) {
+        entities.remove(entity);
+        unregister(entity);
+    }
+
+    private void unregister(@NotNull Entity entity) {
+        if (entity == pacman) {
+            pacman = null;
+        } else if (entity == fruit) {
+            fruit = null;
+        } else if (entity instanceof GhostEntity) {
+            for (int i = 0; i < ghostCount; i++) {
+                if (ghosts[i] != entity)
+                    continue;
+
+                System.arraycopy(ghosts, i + 1, ghosts, i, ghostCount - i - 1);
+                ghosts[--ghostCount] = null;
+                break;
             }
         }
-        throw new IllegalStateException("Pacman not found in maze");
+
+        occupancy[entity.getTileIndex() * ENTITY_TYPES.length + entity.getType().ordinal()]--;
+    }
+
+    private boolean isRegistered(@NotNull Entity entity) {
+        if (entity == pacman || entity == fruit)
+            return true;
+        for (int i = 0; i < ghostCount; i++) {
+            if (ghosts[i] == entity)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called by {@link Entity#setPosition(Vector2dc)} when an entity moves to
+     * a different tile, to keep {@link #countEntities(int, EntityType)} in
+     * sync. Entities that have not been added to this maze are ignored.
+     *
+     * @param entity the entity that moved
+     * @param from   the index of the tile the entity left
+     * @param to     the index of the tile the entity entered
+     */
+    public void updateOccupancy(@NotNull Entity entity, int from, int to) {
+        if (!isRegistered(entity))
+            return;
+
+        int type = entity.getType().ordinal();
+        occupancy[from * ENTITY_TYPES.length + type]--;
+        occupancy[to * ENTITY_TYPES.length + type]++;
     }
 
     public void addParticle(@NotNull Particle particle) {
@@ -169,12 +465,13 @@ public class Maze implements Disposable {
     }
 
     /**
-     * Returns the list of entities in the maze.
+     * Returns the list of entities in the maze. The list cannot be modified;
+     * use {@link #addEntity(Entity)} to add entities.
      *
      * @return The list of entities in the maze.
      */
     public @NotNull List<Entity> getEntities() {
-        return entities;
+        return entitiesView;
     }
 
     /**
@@ -223,9 +520,113 @@ public class Maze implements Disposable {
      * @return The tile at the given position.
      */
     public final @NotNull Tile getTile(int x, int y) {
-        y = (y + tileDimensions.y) % tileDimensions.y;
-        x = (x + tileDimensions.x) % tileDimensions.x;
-        return tiles[y][x];
+        return getTileByIndex(getTileIndex(x, y));
+    }
+
+    /**
+     * Returns the index of the tile at the given position, wrapping positions
+     * outside the maze around to the other side.
+     *
+     * @param x The x-coordinate of the tile.
+     * @param y The y-coordinate of the tile.
+     * @return The index of the tile, <code>y * width + x</code>.
+     */
+    public final int getTileIndex(int x, int y) {
+        if (x < 0 || x >= tileDimensions.x)
+            x = Math.floorMod(x, tileDimensions.x);
+        if (y < 0 || y >= tileDimensions.y)
+            y = Math.floorMod(y, tileDimensions.y);
+        return y * tileDimensions.x + x;
+    }
+
+    /**
+     * Returns the index of the neighbor of the given tile in the given
+     * direction. Tiles on the edge of the maze wrap around to the other side.
+     *
+     * @param index     The index of the tile.
+     * @param direction The direction of the neighbor.
+     * @return The index of the neighbor tile.
+     */
+    public final int getNeighborIndex(int index, @NotNull Direction direction) {
+        return neighbors[(index << 2) + direction.ordinal()];
+    }
+
+    /**
+     * Returns true if the neighbor of the given tile in the given direction is
+     * {@link TileState#isPassable() passable}.
+     *
+     * @param index     The index of the tile.
+     * @param direction The direction to check.
+     * @return true if the neighbor tile in that direction is passable.
+     */
+    public final boolean isPassable(int index, @NotNull Direction direction) {
+        return (moveMasks[index] & (1 << direction.ordinal())) != 0;
+    }
+
+    /**
+     * Returns the tile with the given index.
+     *
+     * @param index The index of the tile, <code>y * width + x</code>.
+     * @return The tile with the given index.
+     */
+    public final @NotNull Tile getTileByIndex(int index) {
+        Tile tile = tileViews[index];
+        if (tile == null) {
+            tile = new Tile(this, index);
+            tileViews[index] = tile;
+        }
+        return tile;
+    }
+
+    /**
+     * Returns the state of the tile with the given index.
+     *
+     * @param index the index of the tile, <code>y * width + x</code>
+     * @return the state of the tile
+     */
+    final @NotNull TileState getTileState(int index) {
+        long bit = 1L << index;
+        if ((pellets[index >>> 6] & bit) != 0)
+            return TileState.PELLET;
+        if ((powerPellets[index >>> 6] & bit) != 0)
+            return TileState.POWER_PELLET;
+        return TILE_STATES[layout[index]];
+    }
+
+    /**
+     * Sets the state of the tile with the given index. Pellets only touch the
+     * bitsets; any other change copies the shared layout first.
+     *
+     * @param index the index of the tile, <code>y * width + x</code>
+     * @param state the new state of the tile
+     */
+    final void setTileState(int index, @NotNull TileState state) {
+        long bit = 1L << index;
+        pellets[index >>> 6] &= ~bit;
+        powerPellets[index >>> 6] &= ~bit;
+
+        TileState layoutState = state;
+        if (state == TileState.PELLET) {
+            pellets[index >>> 6] |= bit;
+            layoutState = TileState.SPACE;
+        } else if (state == TileState.POWER_PELLET) {
+            powerPellets[index >>> 6] |= bit;
+            layoutState = TileState.SPACE;
+        }
+
+        if (layout[index] != layoutState.ordinal()) {
+            if (layout == template.getLayout())
+                layout = layout.clone();
+            layout[index] = (byte) layoutState.ordinal();
+
+            // Only the neighbors' masks point at this tile
+            if (moveMasks == template.getMoveMasks())
+                moveMasks = moveMasks.clone();
+            for (int i = 0; i < 4; i++) {
+                int neighbor = neighbors[(index << 2) + i];
+                moveMasks[neighbor] = MazeTemplate.computeMoveMask(layout, neighbors, neighbor);
+            }
+        }
     }
 
     /**
@@ -238,9 +639,51 @@ public class Maze implements Disposable {
      * @return The wrapped position.
      */
     public final @NotNull Vector2d getWrappedPosition(@NotNull Vector2d position) {
-        double y = (position.y + pixelDimensions.y) % pixelDimensions.y;
-        double x = (position.x + pixelDimensions.x) % pixelDimensions.x;
-        return new Vector2d(x, y);
+        return new Vector2d(wrapX(position.x), wrapY(position.y));
+    }
+
+    /**
+     * Wraps the given x-coordinate (in pixels) to the width of the maze, like
+     * {@link #getWrappedPosition(Vector2d)}.
+     *
+     * @param x The x-coordinate to wrap.
+     * @return The wrapped x-coordinate.
+     */
+    public final double wrapX(double x) {
+        return (x + pixelDimensions.x) % pixelDimensions.x;
+    }
+
+    /**
+     * Wraps the given y-coordinate (in pixels) to the height of the maze, like
+     * {@link #getWrappedPosition(Vector2d)}.
+     *
+     * @param y The y-coordinate to wrap.
+     * @return The wrapped y-coordinate.
+     */
+    public final double wrapY(double y) {
+        return (y + pixelDimensions.y) % pixelDimensions.y;
+    }
+
+    /**
+     * Returns the x-coordinate of the center pixel of the tile with the given
+     * index, see {@link Tile#getCenterPixel()}.
+     *
+     * @param index The index of the tile.
+     * @return The x-coordinate of the center pixel.
+     */
+    public final int getTileCenterX(int index) {
+        return (index % tileDimensions.x) * TILE_SIZE + TILE_SIZE / 2 - 1;
+    }
+
+    /**
+     * Returns the y-coordinate of the center pixel of the tile with the given
+     * index, see {@link Tile#getCenterPixel()}.
+     *
+     * @param index The index of the tile.
+     * @return The y-coordinate of the center pixel.
+     */
+    public final int getTileCenterY(int index) {
+        return (index / tileDimensions.x) * TILE_SIZE + TILE_SIZE / 2 - 1;
     }
 
     /**
@@ -295,22 +738,24 @@ public class Maze implements Disposable {
         gameManager.incrementScore(addScore);
         freezeTicks += 40;
 
-        // We only have sprites for 200, 400, 800, and 1600 points
-        int clampedScoreIndex = switch (localNumGhostsEaten) {
-            case 0 -> 1;
-            case 1 -> 3;
-            case 2 -> 6;
-            default -> 8;
-        };
-
-        Color[] colors = new Color[]{Color.CLEAR, Color.CYAN};
-        Vector2i spriteTile = new Vector2i(clampedScoreIndex, 0);
-        Particle particle = new Particle(bonusPointsSprite, spriteTile, colors);
-        particle.setPosition(ghost.getPosition());
-        particle.setVelocity(new Vector2d(0, 3));
-        particle.setVelocityFor(5);
-        particle.setLiveFor(40);
-        particles.add(particle);
+        if (isRendered()) {
+            // We only have sprites for 200, 400, 800, and 1600 points
+            int clampedScoreIndex = switch (localNumGhostsEaten) {
+                case 0 -> 1;
+                case 1 -> 3;
+                case 2 -> 6;
+                default -> 8;
+            };
+
+            Color[] colors = new Color[]{Color.CLEAR, Color.CYAN};
+            Vector2i spriteTile = new Vector2i(clampedScoreIndex, 0);
+            Particle particle = new Particle(bonusPointsSprite, spriteTile, colors);
+            particle.setPosition(ghost.getPosition());
+            particle.setVelocity(new Vector2d(0, 3));
+            particle.setVelocityFor(5);
+            particle.setLiveFor(40);
+            particles.add(particle);
+        }
 
         // As more ghosts are eaten, the bonus points are worth more
         localNumGhostsEaten++;
@@ -329,25 +774,10 @@ public class Maze implements Disposable {
             // Ghosts are released when a certain number of pellets are eaten. The
             // first 2 ghosts (blinky and pinky) are always released. Then each
             // subsequent ghost has a "cost" (that resets when a ghost is released).
-            // Any extra ghosts (past the first 4) can be released at the same cost
-            // as the final ghost.
-            int level = gameManager.getLevel();
-            // Allow a handicap to delay the speed changes per-level
-            // makes the game easier
-            level = Math.max(1, level - gameManager.getConfig().handicap);
-            int[] bounds = switch (level) {
-                case 1 -> new int[]{0, 0, 30, 60};
-                case 2 -> new int[]{0, 0, 0, 50};
-                default -> new int[]{0, 0, 0, 0};
-            };
-
-            int ghostIndex = 0;
-            for (Entity temp : entities) {
-                if (!(temp instanceof GhostEntity ghost))
-                    continue;
-
-                int bound = bounds[Math.min(ghostIndex, bounds.length - 1)];
-                ghostIndex++;
+            // See LevelSpec#getReleaseBound.
+            for (int ghostIndex = 0; ghostIndex < ghostCount; ghostIndex++) {
+                GhostEntity ghost = ghosts[ghostIndex];
+                int bound = levelSpec.getReleaseBound(ghostIndex);
                 if (ghost.isReleased())
                     continue;
 
@@ -364,20 +794,9 @@ public class Maze implements Disposable {
             pelletsRemaining--;
             tile.setState(TileState.SPACE);
 
-            // Allow a handicap to delay the speed changes per-level
-            // makes the game easier
-            int level  = gameManager.getLevel();
-            level = Math.max(1, level - gameManager.getConfig().handicap);
-
-            int levelIndex = level - 1;
-            if (levelIndex >= LEVEL_FRIGHT_TIMES.length)
-                levelIndex = LEVEL_FRIGHT_TIMES.length - 1;
-
-            frightenedTimer = LEVEL_FRIGHT_TIMES[levelIndex];
-            for (Entity temp : entities) {
-                if (temp instanceof GhostEntity ghost) {
-                    ghost.setState(GhostState.FRIGHTENED);
-                }
+            frightenedTimer = levelSpec.getFrightenedTicks();
+            for (int i = 0; i < ghostCount; i++) {
+                ghosts[i].setState(GhostState.FRIGHTENED);
             }
         } else {
             // Make sure we actually ate a pellet
@@ -394,10 +813,22 @@ public class Maze implements Disposable {
     }
 
     public void spawnFruit() {
+        spawnFruit(gameManager.getRandom());
+    }
+
+    /**
+     * Spawns a fruit, with a lifetime drawn from the given random number
+     * generator.
+     *
+     * @param random the random number generator for the lifetime
+     */
+    public void spawnFruit(@NotNull GameRandom random) {
         // Remove the first fruit, if there
-        entities.removeIf(entity -> entity instanceof FruitEntity);
+        if (this.fruit != null)
+            removeEntity(this.fruit);
         FruitEntity.Config config = new FruitEntity.Config();
         config.spawnPixel = new Vector2d(fruitSpawnPixel);
+        config.ticksLeft = random.nextInt(9 * 60, 10 * 60);
 
         // Fire the event to allow the fruit to be customized
         EntityPreSpawnEvent event = new EntityPreSpawnEvent(this, EntityType.FRUIT, config);
@@ -411,7 +842,7 @@ public class Maze implements Disposable {
         if (spawnEvent.isCancelled())
             return;
 
-        entities.add(fruit);
+        addEntity(fruit);
     }
 
     public void update() {
@@ -437,21 +868,15 @@ public class Maze implements Disposable {
         if (localChaseCounter-- == 0) {
             isGhostChase = !isGhostChase;
 
-            int levelIndex;
-            if (gameManager.getLevel() >= 5)
-                levelIndex = 2;
-            else if (gameManager.getLevel() >= 2)
-                levelIndex = 1;
-            else
-                levelIndex = 0;
-
-            localChaseCounter = LEVEL_STATES[levelIndex][ghostChaseIndex++];
+            localChaseCounter = levelSpec.getChaseScatterTicks(ghostChaseIndex++);
 
             // Fire an event to allow the chase/scatter times to be customized
-            GlobalBehaviorEvent event = new GlobalBehaviorEvent(this, isGhostChase, localChaseCounter);
-            gameManager.getEvents().fireEvent(event);
-            isGhostChase = event.isChaseBehavior();
-            localChaseCounter = event.getTimeLeft();
+            if (gameManager.getEvents().hasListeners(GlobalBehaviorEvent.class)) {
+                GlobalBehaviorEvent event = new GlobalBehaviorEvent(this, isGhostChase, localChaseCounter);
+                gameManager.getEvents().fireEvent(event);
+                isGhostChase = event.isChaseBehavior();
+                localChaseCounter = event.getTimeLeft();
+            }
         }
 
         // Must be indexed to allow modification of entities list
@@ -465,32 +890,31 @@ public class Maze implements Disposable {
         while (iterator.hasNext()) {
             Entity entity = iterator.next();
             if (entity.isRemove()) {
-                EntityRemoveEvent event = new EntityRemoveEvent(entity);
-                gameManager.getEvents().fireEvent(event);
-                if (event.isCancelled())
-                    continue;
+                if (gameManager.getEvents().hasListeners(EntityRemoveEvent.class)) {
+                    EntityRemoveEvent event = new EntityRemoveEvent(entity);
+                    gameManager.getEvents().fireEvent(event);
+                    if (event.isCancelled())
+                        continue;
+                }
 
                 iterator.remove();
+                unregister(entity);
             }
         }
     }
 
     public void render(@NotNull SpriteBatch batch) {
+        if (levelSprite == null)
+            loadSprites();
+
         batch.draw(levelSprite, 0, 0);
 
         // Power pellets should flicker on and off
         boolean flicker = ticks % 20 < 10;
 
-        for (int y = 0; y < tiles.length; y++) {
-            for (int x = 0; x < tiles[y].length; x++) {
-                Tile tile = tiles[y][x];
-                if (tile.getState() == TileState.PELLET) {
-                    pelletSprite.render(batch, x * TILE_SIZE, y * TILE_SIZE);
-                } else if (tile.getState() == TileState.POWER_PELLET && flicker) {
-                    powerPelletSprite.render(batch, x * TILE_SIZE, y * TILE_SIZE);
-                }
-            }
-        }
+        renderPellets(batch, pelletSprite, pellets);
+        if (flicker)
+            renderPellets(batch, powerPelletSprite, powerPellets);
 
         // Render particles (typically bonus points)
         Iterator<Particle> iterator = particles.iterator();
@@ -514,11 +938,25 @@ public class Maze implements Disposable {
         }
     }
 
+    private void renderPellets(@NotNull SpriteBatch batch, @NotNull GrayscaleSpriteSheet sprite, @NotNull long[] bits) {
+        for (int i = 0; i < bits.length; i++) {
+            long word = bits[i];
+            while (word != 0) {
+                int index = (i << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                sprite.render(batch, (index % tileDimensions.x) * TILE_SIZE, (index / tileDimensions.x) * TILE_SIZE);
+            }
+        }
+    }
+
     @Override
     public void dispose() {
         for (Entity entity : entities) {
             entity.dispose();
         }
+        if (levelSprite == null)
+            return;
+
         levelSprite.getTexture().dispose();
         pelletSprite.dispose();
         powerPelletSprite.dispose();
@@ -0,0 +1,487 @@
+package com.buaisociety.pacman.maze;
+
+import com.badlogic.gdx.graphics.Color;
+import com.buaisociety.pacman.entity.Direction;
+import com.buaisociety.pacman.entity.GhostEntity;
+import com.buaisociety.pacman.entity.behavior.Behavior;
+import com.buaisociety.pacman.util.Assets;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector2i;
+import org.joml.Vector2ic;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The parsed, immutable data of a level: the tile grid from
+ * <code>maze.png</code>, and the spawn data and ghosts from
+ * <code>config.json</code>.
+ *
+ * <p>Templates are loaded once per process and cached by level name, so every
+ * game on every thread shares the same template. Each ghost gets its own
+ * {@link GhostEntity.Config} from {@link GhostSpec#createConfig(Vector2ic)}.
+ *
+ * <p>The tile grid is stored as a flat layout of {@link TileState} ordinals,
+ * indexed by <code>y * width + x</code>, which every {@link Maze} of this
+ * level shares. Pellets and power pellets are stored separately as bitsets,
+ * since those are the only tiles that change during a game, so each maze only
+ * needs its own copy of the bitsets.
+ *
+ * <p>The template also precomputes, for every tile, the index of the neighbor
+ * in each {@link Direction} (wrapping around the edges of the maze, which is
+ * how tunnels connect), and a 4-bit mask of the directions whose neighbor is
+ * {@link TileState#isPassable() passable}. Movement checks then take a single
+ * array read instead of resolving neighbor tiles.
+ */
+public final class MazeTemplate {
+
+    private static final @NotNull ObjectMapper MAPPER = new ObjectMapper();
+    private static final @NotNull Map<String, MazeTemplate> TEMPLATES = new ConcurrentHashMap<>();
+    private static final @NotNull Map<String, List<String>> LEVELS = new ConcurrentHashMap<>();
+    private static final @NotNull Direction[] DIRECTIONS = Direction.values();
+    private static final @NotNull TileState[] TILE_STATES = TileState.values();
+
+    private final @NotNull String name;
+    private final @NotNull String levelTexturePath;
+    private final int width;
+    private final int height;
+    private final @NotNull byte[] layout;  // pellets and power pellets are stored as SPACE
+    private final @NotNull long[] pellets;
+    private final @NotNull long[] powerPellets;
+    private final @NotNull Vector2ic[] positions;
+    private final @NotNull int[] neighbors;  // 4 per tile, indexed by Direction#ordinal()
+    private final @NotNull byte[] moveMasks;
+    private final @NotNull Vector2i fruitSpawnPixel;
+    private final @NotNull Vector2i pacmanSpawnPixel;
+    private final @NotNull Vector2i ghostRevivePixel;
+    private final @NotNull List<GhostSpec> ghosts;
+    private volatile @Nullable DistanceTable distanceTable;  // computed when first requested
+
+    private MazeTemplate(
+        @NotNull String name,
+        @NotNull TileState[][] tiles,
+        @NotNull Vector2i fruitSpawnPixel,
+        @NotNull Vector2i pacmanSpawnPixel,
+        @NotNull Vector2i ghostRevivePixel,
+        @NotNull List<GhostSpec> ghosts
+    ) {
+        this.name = name;
+        this.levelTexturePath = "mazes/" + name + "/render.png";
+        this.height = tiles.length;
+        this.width = tiles[0].length;
+        this.layout = new byte[width * height];
+        this.pellets = new long[(layout.length + 63) >>> 6];
+        this.powerPellets = new long[pellets.length];
+        this.positions = new Vector2ic[layout.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = y * width + x;
+                TileState state = tiles[y][x];
+                positions[index] = new Vector2i(x, y);
+                if (state == TileState.PELLET) {
+                    pellets[index >>> 6] |= 1L << index;
+                    state = TileState.SPACE;
+                } else if (state == TileState.POWER_PELLET) {
+                    powerPellets[index >>> 6] |= 1L << index;
+                    state = TileState.SPACE;
+                }
+                layout[index] = (byte) state.ordinal();
+            }
+        }
+
+        this.neighbors = new int[layout.length * DIRECTIONS.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = y * width + x;
+                for (Direction direction : DIRECTIONS) {
+                    int neighborX = Math.floorMod(x + direction.getDx(), width);
+                    int neighborY = Math.floorMod(y + direction.getDy(), height);
+                    neighbors[index * DIRECTIONS.length + direction.ordinal()] = neighborY * width + neighborX;
+                }
+            }
+        }
+
+        this.moveMasks = new byte[layout.length];
+        for (int index = 0; index < layout.length; index++) {
+            moveMasks[index] = computeMoveMask(layout, neighbors, index);
+        }
+        this.fruitSpawnPixel = fruitSpawnPixel;
+        this.pacmanSpawnPixel = pacmanSpawnPixel;
+        this.ghostRevivePixel = ghostRevivePixel;
+        this.ghosts = Collections.unmodifiableList(ghosts);
+    }
+
+    /**
+     * Returns the template for the given level, loading it the first time it
+     * is requested. This method is thread-safe.
+     *
+     * @param name the name of the level, e.g. the directory in <code>mazes/</code>
+     * @return the template for the level
+     */
+    public static @NotNull MazeTemplate get(@NotNull String name) {
+        return TEMPLATES.computeIfAbsent(name, MazeTemplate::load);
+    }
+
+    /**
+     * Returns the level names listed in the given levels preset (e.g.
+     * <code>levels.json</code>), loading it the first time it is requested.
+     * This method is thread-safe.
+     *
+     * @param preset the path of the levels preset
+     * @return the unmodifiable list of level names
+     */
+    public static @NotNull List<String> getLevels(@NotNull String preset) {
+        return LEVELS.computeIfAbsent(preset, MazeTemplate::loadLevels);
+    }
+
+    public @NotNull String getName() {
+        return name;
+    }
+
+    public @NotNull String getLevelTexturePath() {
+        return levelTexturePath;
+    }
+
+    public @NotNull Vector2ic getFruitSpawnPixel() {
+        return fruitSpawnPixel;
+    }
+
+    public @NotNull Vector2ic getPacmanSpawnPixel() {
+        return pacmanSpawnPixel;
+    }
+
+    public @NotNull Vector2ic getGhostRevivePixel() {
+        return ghostRevivePixel;
+    }
+
+    public @NotNull List<GhostSpec> getGhosts() {
+        return ghosts;
+    }
+
+    /**
+     * Returns the all-pairs shortest path table for this level, computing it
+     * (in parallel) the first time it is requested. This method is
+     * thread-safe, and the table is only ever computed once.
+     *
+     * @return the distance table for this level
+     */
+    public @NotNull DistanceTable getDistanceTable() {
+        DistanceTable table = distanceTable;
+        if (table == null) {
+            synchronized (this) {
+                table = distanceTable;
+                if (table == null) {
+                    table = new DistanceTable(moveMasks, neighbors);
+                    distanceTable = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Returns the width of the maze, in tiles.
+     *
+     * @return the width of the maze
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the maze, in tiles.
+     *
+     * @return the height of the maze
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the tile coordinates of the tile with the given index. The
+     * returned vector is shared, and must not be modified.
+     *
+     * @param index the index of the tile, <code>y * width + x</code>
+     * @return the tile coordinates
+     */
+    public @NotNull Vector2ic getPosition(int index) {
+        return positions[index];
+    }
+
+    /**
+     * Returns the shared layout. Must not be modified; mazes copy it before
+     * changing a tile.
+     */
+    @NotNull byte[] getLayout() {
+        return layout;
+    }
+
+    /**
+     * Returns the neighbor table, 4 entries per tile. Must not be modified.
+     */
+    @NotNull int[] getNeighbors() {
+        return neighbors;
+    }
+
+    /**
+     * Returns the shared move masks. Must not be modified; mazes copy them
+     * before changing a tile.
+     */
+    @NotNull byte[] getMoveMasks() {
+        return moveMasks;
+    }
+
+    /**
+     * Computes the mask of directions, 1 bit per {@link Direction#ordinal()},
+     * in which the neighbor of the given tile is passable.
+     *
+     * @param layout    the layout of tile state ordinals
+     * @param neighbors the neighbor table
+     * @param index     the index of the tile
+     * @return the move mask of the tile
+     */
+    static byte computeMoveMask(@NotNull byte[] layout, @NotNull int[] neighbors, int index) {
+        int mask = 0;
+        for (Direction direction : DIRECTIONS) {
+            int neighbor = neighbors[index * DIRECTIONS.length + direction.ordinal()];
+            if (TILE_STATES[layout[neighbor]].isPassable())
+                mask |= 1 << direction.ordinal();
+        }
+        return (byte) mask;
+    }
+
+    /**
+     * Returns a new copy of the initial pellet bitset.
+     */
+    @NotNull long[] copyPellets() {
+        return pellets.clone();
+    }
+
+    /**
+     * Returns a new copy of the initial power pellet bitset.
+     */
+    @NotNull long[] copyPowerPellets() {
+        return powerPellets.clone();
+    }
+
+    private static @NotNull List<String> loadLevels(@NotNull String preset) {
+        JsonNode levelsJson;
+        try {
+            levelsJson = MAPPER.readTree(Assets.readString(preset));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load " + preset, e);
+        }
+
+        List<String> levels = new ArrayList<>();
+        for (JsonNode level : levelsJson.get("levels")) {
+            levels.add(level.asText());
+        }
+        return Collections.unmodifiableList(levels);
+    }
+
+    private static @NotNull MazeTemplate load(@NotNull String name) {
+        JsonNode mazeConfigJson;
+        try {
+            mazeConfigJson = MAPPER.readTree(Assets.readString("mazes/" + name + "/config.json"));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load maze config for " + name, e);
+        }
+
+        // Decoded with ImageIO instead of a Pixmap, so no libGDX backend is needed
+        BufferedImage image;
+        try (InputStream stream = Assets.read("mazes/" + name + "/maze.png")) {
+            image = ImageIO.read(stream);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load maze image for " + name, e);
+        }
+
+        TileState[][] tiles = new TileState[image.getHeight()][image.getWidth()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int red = (image.getRGB(x, y) >> 16) & 0xFF;  // grayscale, so r=g=b
+
+                // This is a 4-bit grayscale image, so we can only have 16 colors
+                int normalized = red / (256 / (TileState.values().length - 1));
+                tiles[image.getHeight() - 1 - y][x] = switch (normalized) {
+                    case 0 -> TileState.SPACE;
+                    case 1 -> TileState.TUNNEL;
+                    case 2 -> TileState.PELLET;
+                    case 3 -> TileState.POWER_PELLET;
+                    case 4 -> TileState.GHOST_PEN;
+                    case 5 -> TileState.WALL;
+                    default -> throw new IllegalStateException("Unexpected value: " + normalized);
+                };
+            }
+        }
+
+        List<GhostSpec> ghosts = new ArrayList<>();
+        for (JsonNode ghostNode : mazeConfigJson.get("ghosts")) {
+            ghosts.add(loadGhost(ghostNode));
+        }
+
+        return new MazeTemplate(
+            name,
+            tiles,
+            parseVector(mazeConfigJson.get("fruit_spawn_position")),
+            parseVector(mazeConfigJson.get("pacman_spawn_position")),
+            parseVector(mazeConfigJson.get("ghost_revive_position")),
+            ghosts
+        );
+    }
+
+    private static @NotNull GhostSpec loadGhost(@NotNull JsonNode ghostNode) {
+        String ghostName = ghostNode.get("name").asText();  // expect a value like 'ghosts/inky.json'
+
+        JsonNode ghostJson;
+        try {
+            ghostJson = MAPPER.readTree(Assets.readString(ghostName));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load ghost config for " + ghostName, e);
+        }
+
+        String behaviorClassPath = ghostJson.get("chase_behavior").asText();
+        Constructor<? extends Behavior> chaseConstructor;
+        try {
+            chaseConstructor = Class.forName(behaviorClassPath).asSubclass(Behavior.class).getConstructor();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load behavior for " + ghostName, e);
+        }
+
+        JsonNode colorJson = ghostJson.get("colors");
+        return new GhostSpec(
+            ghostName,
+            parseVector(ghostNode.get("spawn_position")),
+            Direction.valueOf(ghostNode.get("spawn_direction").asText().toUpperCase(Locale.ROOT)),
+            ghostNode.get("is_released").asBoolean(),
+            parseVector(ghostNode.get("scatter_tile")),
+            ghostJson.get("is_elroy").asBoolean(),
+            chaseConstructor,
+            parseColors(colorJson.get("alive")),
+            parseColors(colorJson.get("frightened")),
+            parseColors(colorJson.get("flash")),
+            parseColors(colorJson.get("eaten"))
+        );
+    }
+
+    private static @NotNull Color[] parseColors(@NotNull JsonNode node) {
+        Color[] colors = new Color[node.size()];
+        for (int i = 0; i < colors.length; i++) {
+            JsonNode color = node.get(i);
+            colors[i] = new Color(
+                (float) color.get("r").asDouble(),
+                (float) color.get("g").asDouble(),
+                (float) color.get("b").asDouble(),
+                (float) color.get("a").asDouble()
+            );
+        }
+        return colors;
+    }
+
+    private static @NotNull Vector2i parseVector(@NotNull JsonNode node) {
+        return new Vector2i(node.get("x").asInt(), node.get("y").asInt());
+    }
+
+
+    /**
+     * The parsed data of 1 ghost in a level. The chase behavior class is
+     * resolved once, and a new behavior is created for every ghost.
+     */
+    public static final class GhostSpec {
+        private final @NotNull String name;
+        private final @NotNull Vector2i spawnPixel;
+        private final @NotNull Direction spawnDirection;
+        private final boolean spawnReleased;
+        private final @NotNull Vector2i scatterTile;
+        private final boolean isElroy;
+        private final @NotNull Constructor<? extends Behavior> chaseConstructor;
+        private final @NotNull Color[] colorsAlive;
+        private final @NotNull Color[] colorsFrightened;
+        private final @NotNull Color[] colorsFlash;
+        private final @NotNull Color[] colorsEaten;
+
+        private GhostSpec(
+            @NotNull String name,
+            @NotNull Vector2i spawnPixel,
+            @NotNull Direction spawnDirection,
+            boolean spawnReleased,
+            @NotNull Vector2i scatterTile,
+            boolean isElroy,
+            @NotNull Constructor<? extends Behavior> chaseConstructor,
+            @NotNull Color[] colorsAlive,
+            @NotNull Color[] colorsFrightened,
+            @NotNull Color[] colorsFlash,
+            @NotNull Color[] colorsEaten
+        ) {
+            this.name = name;
+            this.spawnPixel = spawnPixel;
+            this.spawnDirection = spawnDirection;
+            this.spawnReleased = spawnReleased;
+            this.scatterTile = scatterTile;
+            this.isElroy = isElroy;
+            this.chaseConstructor = chaseConstructor;
+            this.colorsAlive = colorsAlive;
+            this.colorsFrightened = colorsFrightened;
+            this.colorsFlash = colorsFlash;
+            this.colorsEaten = colorsEaten;
+        }
+
+        /**
+         * Returns the path of the ghost's config, e.g. <code>ghosts/inky.json</code>.
+         *
+         * @return the path of the ghost's config
+         */
+        public @NotNull String getName() {
+            return name;
+        }
+
+        /**
+         * Creates a new config for this ghost, with a new chase behavior. The
+         * config does not share any mutable state with this spec.
+         *
+         * @param ghostRevivePixel the pixel that eaten ghosts return to
+         * @return the new ghost config
+         */
+        public @NotNull GhostEntity.Config createConfig(@NotNull Vector2ic ghostRevivePixel) {
+            Behavior behavior;
+            try {
+                behavior = chaseConstructor.newInstance();
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to create behavior for " + name, e);
+            }
+
+            GhostEntity.Config ghostConfig = new GhostEntity.Config();
+            ghostConfig.isElroy = isElroy;
+            ghostConfig.chase = behavior;
+            ghostConfig.scatterTile = new Vector2i(scatterTile);
+            ghostConfig.spawnPixel = new Vector2i(spawnPixel);
+            ghostConfig.spawnDirection = spawnDirection;
+            ghostConfig.spawnReleased = spawnReleased;
+            ghostConfig.reviveTile = new Vector2i(ghostRevivePixel);
+            ghostConfig.colorsAlive = copyColors(colorsAlive);
+            ghostConfig.colorsFrightened = copyColors(colorsFrightened);
+            ghostConfig.colorsFlash = copyColors(colorsFlash);
+            ghostConfig.colorsEaten = copyColors(colorsEaten);
+            return ghostConfig;
+        }
+
+        // Colors are mutable, so every config gets its own
+        private static @NotNull Color[] copyColors(@NotNull Color[] colors) {
+            Color[] copy = new Color[colors.length];
+            for (int i = 0; i < colors.length; i++) {
+                copy[i] = new Color(colors[i]);
+            }
+            return copy;
+        }
+    }
+}
@@ -1,29 +1,39 @@
 package com.buaisociety.pacman.maze;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
 import java.util.function.Predicate;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2d;
 import org.joml.Vector2i;
-import org.joml.Vector2ic;
 
 import com.buaisociety.pacman.entity.Direction;
-import com.buaisociety.pacman.entity.Entity;
-import com.buaisociety.pacman.entity.FruitEntity;
+import com.buaisociety.pacman.entity.EntityType;
 import com.buaisociety.pacman.entity.GhostEntity;
 import com.buaisociety.pacman.entity.GhostState;
 import com.buaisociety.pacman.entity.PacmanEntity;
 
 public class Searcher {
 
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final ThreadLocal<SearchContext> CONTEXT = ThreadLocal.withInitial(SearchContext::new);
+    private static final Pair<Boolean, Direction> NO_GHOST_NEARBY = new Pair<>(false, null);
+
+    /**
+     * Returns the search context of the current thread, to run searches
+     * without allocating.
+     *
+     * @return the search context of the current thread
+     */
+    public static @NotNull SearchContext context() {
+        return CONTEXT.get();
+    }
+
     /**
      * Stores the result of the BFS search, including the found tile, the distance from the start tile, and the direction.
      */
@@ -61,15 +71,11 @@ public class Searcher {
     public static Map<Direction, SearchResult> findTileInAllDirections(@NotNull Tile startTile, @NotNull Predicate<Tile> predicate) {
         Map<Direction, SearchResult> results = new EnumMap<>(Direction.class);
 
-        for (Direction direction : Direction.values()) {
-            SearchResult result = findTileWithBFS(startTile, tile -> {
-                // Check if the tile matches the predicate or contains a FruitEntity
-                boolean matchesPredicate = predicate.test(tile);
-                boolean containsFruit = startTile.getMaze().getEntities().stream()
-                    .anyMatch(entity -> entity instanceof FruitEntity && entity.getTilePosition().equals(tile.getPosition()));
-                return matchesPredicate || containsFruit;
-            }, direction);
+        Maze maze = startTile.getMaze();
+        Predicate<Tile> predicateOrFruit = tile -> predicate.test(tile) || maze.countEntities(tile.getIndex(), EntityType.FRUIT) > 0;
 
+        for (Direction direction : DIRECTIONS) {
+            SearchResult result = findTileWithBFS(startTile, predicateOrFruit, direction);
             if (result != null) {
                 results.put(result.getDirection(), result);
             }
@@ -81,44 +87,45 @@ public class Searcher {
     /**
      * Performs a BFS to find the closest tile in the specified direction that matches the predicate.
      *
+     * <p>The search starts at the neighbor of the start tile in the given
+     * direction (distance 1), then only continues in that same direction,
+     * stopping at walls. Tiles are tracked by index in a reusable, per-thread
+     * {@link SearchContext}, so the search itself does not allocate.
+     *
      * @param startTile The starting tile for the BFS.
      * @param predicate The predicate to test each tile.
      * @param direction The initial direction for the search.
      * @return The SearchResult containing the tile, distance, and direction, or null if no matching tile is found.
      */
     public static SearchResult findTileWithBFS(@NotNull Tile startTile, @NotNull Predicate<Tile> predicate, @NotNull Direction direction) {
-        Queue<Vector2ic> queue = new ArrayDeque<>();
-        Set<Vector2ic> visited = new HashSet<>();
-        Queue<Integer> distances = new ArrayDeque<>();
-
-        Vector2i startPosition = new Vector2i(startTile.getPosition()).add(getDirectionOffset(direction));
-        queue.add(startPosition);
-        visited.add(startPosition);
-        distances.add(1);
-
-        while (!queue.isEmpty()) {
-            Vector2ic currentPos = queue.poll();
-            int currentDistance = distances.poll();
-            Tile currentTile = startTile.getMaze().getTile(new Vector2i(currentPos));
-
-            if (predicate.test(currentTile)) {
-                return new SearchResult(currentTile, currentDistance, direction); // Return direction
-            }
+        Maze maze = startTile.getMaze();
+        SearchContext context = CONTEXT.get();
+        if (!context.searchInDirection(maze, startTile.getIndex(), direction, predicate))
+            return null;  // No tile matching the predicate was found
 
-            // Enqueue neighboring tiles only in the initial search direction
-            for (Vector2i neighbor : getNeighborsInDirection(new Vector2i(currentPos), direction)) {
-                Tile neighborTile = startTile.getMaze().getTile(neighbor);
-                if (neighborTile.getState() == TileState.WALL) continue;
-
-                if (!visited.contains(neighbor)) {
-                    visited.add(neighbor);
-                    queue.add(neighbor);
-                    distances.add(currentDistance + 1);
-                }
-            }
-        }
+        return new SearchResult(maze.getTileByIndex(context.getFoundIndex()), context.getFoundDistance(), direction);
+    }
 
-        return null;  // No tile matching the predicate was found
+    /**
+     * Looks in each of the four directions from the start tile, and records
+     * the nearest tile of every {@link Target} in a single walk per direction.
+     *
+     * <p>Each walk follows the same rules as
+     * {@link #findTileWithBFS(Tile, Predicate, Direction)}: it starts at the
+     * neighbor of the start tile (distance 1), and continues in a straight
+     * line until it hits a wall. So, for example, the result of
+     * <code>findTileInAllDirections(tile, t -> t.getState() == TileState.PELLET)</code>
+     * in a direction is the nearer of {@link Target#PELLET} and
+     * {@link Target#FRUIT} in that direction.
+     *
+     * <p>This method does not allocate.
+     *
+     * @param maze       the maze to search
+     * @param startIndex the index of the start tile
+     * @param result     the result to fill, which is cleared first
+     */
+    public static void sense(@NotNull Maze maze, int startIndex, @NotNull SensorResult result) {
+        CONTEXT.get().sense(maze, startIndex, result);
     }
 
     /**
@@ -170,7 +177,7 @@ public class Searcher {
 
         GhostEntity nearestGhost = findNearestGhost(pacman);
         if (nearestGhost != null) {
-            double ghostDistance = nearestGhost.getPosition().distance(pacman.getPosition());
+            double ghostDistance = Vector2d.distance(nearestGhost.getX(), nearestGhost.getY(), pacman.getX(), pacman.getY());
             if (ghostDistance <= distance) {
                 // If Pacman has eaten a power pellet, return direction towards the ghost
                 if (hasEatenPowerPellet && nearestGhost.getState() == GhostState.FRIGHTENED) {
@@ -181,7 +188,7 @@ public class Searcher {
                 }
             }
         }
-        return new Pair<>(false, null); // No ghosts nearby
+        return NO_GHOST_NEARBY; // No ghosts nearby
     }
 
     /**
@@ -195,13 +202,12 @@ public class Searcher {
         GhostEntity nearestGhost = null;
         double closestDistance = Double.MAX_VALUE;
 
-        for (Entity entity : maze.getEntities()) {
-            if (entity instanceof GhostEntity ghost) {
-                double distance = ghost.getPosition().distance(pacman.getPosition());
-                if (distance < closestDistance) {
-                    closestDistance = distance;
-                    nearestGhost = ghost;
-                }
+        for (int i = 0; i < maze.getGhostCount(); i++) {
+            GhostEntity ghost = maze.getGhost(i);
+            double distance = Vector2d.distance(ghost.getX(), ghost.getY(), pacman.getX(), pacman.getY());
+            if (distance < closestDistance) {
+                closestDistance = distance;
+                nearestGhost = ghost;
             }
         }
         return nearestGhost;
@@ -243,4 +249,243 @@ public class Searcher {
         }
     }
 
+
+    /**
+     * The reusable state of a search: a ring queue of tile indices (and their
+     * distances), and visited marks that are "cleared" by bumping a generation
+     * stamp instead of refilling the array. Each thread has its own context,
+     * see {@link #context()}.
+     */
+    public static final class SearchContext {
+        private int[] queue = new int[0];
+        private int[] distances = new int[0];
+        private int[] visited = new int[0];
+        private int generation;
+
+        private int foundIndex = -1;
+        private int foundDistance = -1;
+
+        private SearchContext() {
+        }
+
+        /**
+         * Returns the index of the tile found by the last successful search.
+         *
+         * @return the index of the found tile
+         */
+        public int getFoundIndex() {
+            return foundIndex;
+        }
+
+        /**
+         * Returns the distance of the tile found by the last successful search.
+         *
+         * @return the distance of the found tile
+         */
+        public int getFoundDistance() {
+            return foundDistance;
+        }
+
+        /**
+         * Searches for a matching tile, starting at the neighbor of the start
+         * tile in the given direction and only continuing in that direction,
+         * like {@link Searcher#findTileWithBFS(Tile, Predicate, Direction)}.
+         *
+         * @param maze       the maze to search
+         * @param startIndex the index of the start tile
+         * @param direction  the direction to search in
+         * @param predicate  the predicate to test each tile
+         * @return true if a tile was found, see {@link #getFoundIndex()}
+         */
+        public boolean searchInDirection(@NotNull Maze maze, int startIndex, @NotNull Direction direction, @NotNull Predicate<Tile> predicate) {
+            int size = maze.getDimensions().x() * maze.getDimensions().y();
+            begin(size);
+            int mask = queue.length - 1;
+            int head = 0;
+            int tail = 0;
+
+            int first = maze.getNeighborIndex(startIndex, direction);
+            visited[first] = generation;
+            queue[tail & mask] = first;
+            distances[tail & mask] = 1;
+            tail++;
+
+            while (head != tail) {
+                int current = queue[head & mask];
+                int distance = distances[head & mask];
+                head++;
+
+                if (predicate.test(maze.getTileByIndex(current))) {
+                    foundIndex = current;
+                    foundDistance = distance;
+                    return true;
+                }
+
+                // Enqueue neighboring tiles only in the initial search direction
+                int neighbor = maze.getNeighborIndex(current, direction);
+                if (maze.getTileState(neighbor) == TileState.WALL || visited[neighbor] == generation)
+                    continue;
+
+                visited[neighbor] = generation;
+                queue[tail & mask] = neighbor;
+                distances[tail & mask] = distance + 1;
+                tail++;
+            }
+
+            foundIndex = -1;
+            foundDistance = -1;
+            return false;
+        }
+
+        private void sense(@NotNull Maze maze, int startIndex, @NotNull SensorResult result) {
+            result.clear();
+
+            int size = maze.getDimensions().x() * maze.getDimensions().y();
+            for (Direction direction : DIRECTIONS) {
+                begin(size);
+
+                int current = maze.getNeighborIndex(startIndex, direction);
+                int distance = 1;
+                while (true) {
+                    visited[current] = generation;
+                    TileState state = maze.getTileState(current);
+                    if (state == TileState.PELLET)
+                        result.offer(Target.PELLET, direction, current, distance);
+                    else if (state == TileState.POWER_PELLET)
+                        result.offer(Target.POWER_PELLET, direction, current, distance);
+                    else if (state == TileState.TUNNEL)
+                        result.offer(Target.TUNNEL, direction, current, distance);
+                    if (maze.countEntities(current, EntityType.FRUIT) > 0)
+                        result.offer(Target.FRUIT, direction, current, distance);
+                    if (maze.countEntities(current, EntityType.GHOST) > 0)
+                        offerGhosts(maze, current, direction, distance, result);
+
+                    // Continue in a straight line until a wall (or a full loop through a tunnel)
+                    int next = maze.getNeighborIndex(current, direction);
+                    if (maze.getTileState(next) == TileState.WALL || visited[next] == generation)
+                        break;
+                    current = next;
+                    distance++;
+                }
+            }
+        }
+
+        private void offerGhosts(@NotNull Maze maze, int tile, @NotNull Direction direction, int distance, @NotNull SensorResult result) {
+            for (int i = 0; i < maze.getGhostCount(); i++) {
+                GhostEntity ghost = maze.getGhost(i);
+                if (ghost.getTileIndex() != tile)
+                    continue;
+
+                switch (ghost.getState()) {
+                    case FRIGHTENED -> result.offer(Target.FRIGHTENED_GHOST, direction, tile, distance);
+                    case CHASE, SCATTER -> result.offer(Target.DANGEROUS_GHOST, direction, tile, distance);
+                    case EATEN -> {
+                    }
+                }
+            }
+        }
+
+        private void begin(int size) {
+            if (visited.length < size) {
+                int capacity = Math.max(2, Integer.highestOneBit(size - 1) << 1);  // power of 2 for the ring mask
+                queue = new int[capacity];
+                distances = new int[capacity];
+                visited = new int[size];
+                generation = 0;
+            }
+
+            // Once the stamp wraps around, old marks could look current
+            if (++generation == 0) {
+                Arrays.fill(visited, 0);
+                generation = 1;
+            }
+        }
+    }
+
+    /**
+     * The kinds of tiles (and entities) reported by {@link #sense(Maze, int, SensorResult)}.
+     */
+    public enum Target {
+        PELLET,
+        POWER_PELLET,
+        FRUIT,
+        TUNNEL,
+        FRIGHTENED_GHOST,
+        DANGEROUS_GHOST  // a ghost in chase or scatter mode
+    }
+
+    /**
+     * The nearest tile of each {@link Target}, in each direction, filled by
+     * {@link #sense(Maze, int, SensorResult)}. Results are stored in flat
+     * arrays indexed by target and direction, so a single instance can be
+     * reused every tick.
+     */
+    public static final class SensorResult {
+        private static final int TARGETS = Target.values().length;
+
+        private final int[] distances = new int[TARGETS * DIRECTIONS.length];
+        private final int[] tiles = new int[TARGETS * DIRECTIONS.length];
+
+        public SensorResult() {
+            clear();
+        }
+
+        /**
+         * Returns the distance to the nearest tile of the target in the given
+         * direction, or -1 if there is none.
+         *
+         * @param target    the kind of tile
+         * @param direction the direction that was searched
+         * @return the distance in tiles, or -1
+         */
+        public int getDistance(@NotNull Target target, @NotNull Direction direction) {
+            return distances[target.ordinal() * DIRECTIONS.length + direction.ordinal()];
+        }
+
+        /**
+         * Returns the index of the nearest tile of the target in the given
+         * direction, or -1 if there is none.
+         *
+         * @param target    the kind of tile
+         * @param direction the direction that was searched
+         * @return the index of the tile, or -1
+         */
+        public int getTileIndex(@NotNull Target target, @NotNull Direction direction) {
+            return tiles[target.ordinal() * DIRECTIONS.length + direction.ordinal()];
+        }
+
+        /**
+         * Returns the direction with the nearest tile of the target, or
+         * <code>null</code> if there is none in any direction. Ties go to the
+         * first direction in {@link Direction#values()} order.
+         *
+         * @param target the kind of tile
+         * @return the direction of the nearest tile, or null
+         */
+        public @Nullable Direction getClosestDirection(@NotNull Target target) {
+            Direction closest = null;
+            int closestDistance = Integer.MAX_VALUE;
+            for (Direction direction : DIRECTIONS) {
+                int distance = getDistance(target, direction);
+                if (distance >= 0 && distance < closestDistance) {
+                    closestDistance = distance;
+                    closest = direction;
+                }
+            }
+            return closest;
+        }
+
+        private void clear() {
+            Arrays.fill(distances, -1);
+            Arrays.fill(tiles, -1);
+        }
+
+        private void offer(@NotNull Target target, @NotNull Direction direction, int tile, int distance) {
+            int index = target.ordinal() * DIRECTIONS.length + direction.ordinal();
+            if (distances[index] == -1) {
+                distances[index] = distance;
+                tiles[index] = tile;
+            }
+        }
+    }
 }
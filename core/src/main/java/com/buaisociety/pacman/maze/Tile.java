@@ -9,17 +9,18 @@ import java.util.Objects;
 
 /**
  * Represents a tile in the maze.
+ *
+ * <p>Tiles are lightweight views over the maze's tile storage (see
+ * {@link MazeTemplate}); the state is read from, and written to, the maze.
  */
 public class Tile {
 
     private final @NotNull Maze maze;
-    private final @NotNull Vector2i position;
-    private @NotNull TileState state;
+    private final int index;
 
-    public Tile(@NotNull Maze maze, @NotNull Vector2i position, @NotNull TileState state) {
+    Tile(@NotNull Maze maze, int index) {
         this.maze = maze;
-        this.position = position;
-        this.state = state;
+        this.index = index;
     }
 
     /**
@@ -31,6 +32,15 @@ public class Tile {
         return maze;
     }
 
+    /**
+     * Returns the index of this tile in the maze, <code>y * width + x</code>.
+     *
+     * @return the index of this tile.
+     */
+    public int getIndex() {
+        return index;
+    }
+
     /**
      * Returns the tile coordinates of this tile.
      *
@@ -39,7 +49,7 @@ public class Tile {
      * @return the tile coordinates of this tile.
      */
     public @NotNull Vector2ic getPosition() {
-        return position;
+        return maze.getTemplate().getPosition(index);
     }
 
     /**
@@ -48,7 +58,7 @@ public class Tile {
      * @return the current state of the tile.
      */
     public @NotNull TileState getState() {
-        return state;
+        return maze.getTileState(index);
     }
 
     /**
@@ -61,7 +71,7 @@ public class Tile {
      * @param state the new state of the tile.
      */
     public void setState(@NotNull TileState state) {
-        this.state = state;
+        maze.setTileState(index, state);
     }
 
     /**
@@ -73,9 +83,25 @@ public class Tile {
      * @return the position of the center pixel of this tile
      */
     public @NotNull Vector2i getCenterPixel() {
-        int x = position.x * Maze.TILE_SIZE + Maze.TILE_SIZE / 2 - 1;
-        int y = position.y * Maze.TILE_SIZE + Maze.TILE_SIZE / 2 - 1;
-        return new Vector2i(x, y);
+        return new Vector2i(getCenterX(), getCenterY());
+    }
+
+    /**
+     * Returns the x-coordinate of the {@link #getCenterPixel() center pixel}.
+     *
+     * @return the x-coordinate of the center pixel of this tile
+     */
+    public int getCenterX() {
+        return maze.getTileCenterX(index);
+    }
+
+    /**
+     * Returns the y-coordinate of the {@link #getCenterPixel() center pixel}.
+     *
+     * @return the y-coordinate of the center pixel of this tile
+     */
+    public int getCenterY() {
+        return maze.getTileCenterY(index);
     }
 
     /**
@@ -85,7 +111,7 @@ public class Tile {
      * @return the neighbor tile in the given direction
      */
     public @NotNull Tile getNeighbor(@NotNull Direction direction) {
-        return maze.getTile(position.x + direction.getDx(), position.y + direction.getDy());
+        return maze.getTileByIndex(maze.getNeighborIndex(index, direction));
     }
 
     @Override
@@ -93,11 +119,11 @@ public class Tile {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Tile tile = (Tile) o;
-        return Objects.equals(maze, tile.maze) && Objects.equals(position, tile.position);
+        return index == tile.index && Objects.equals(maze, tile.maze);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(maze, position);
+        return Objects.hash(maze, index);
     }
 }
@@ -0,0 +1,54 @@
+package com.buaisociety.pacman.network;
+
+/**
+ * The activation function applied to the weighted sum of each hidden and
+ * output node of a {@link CompiledNetwork}.
+ */
+public enum Activation {
+
+    SIGMOID {
+        @Override
+        public float apply(float x) {
+            return 1f / (1f + (float) Math.exp(-x));
+        }
+    },
+
+    /**
+     * The steepened sigmoid from the original NEAT paper.
+     */
+    STEEPENED_SIGMOID {
+        @Override
+        public float apply(float x) {
+            return 1f / (1f + (float) Math.exp(-4.9f * x));
+        }
+    },
+
+    TANH {
+        @Override
+        public float apply(float x) {
+            return (float) Math.tanh(x);
+        }
+    },
+
+    RELU {
+        @Override
+        public float apply(float x) {
+            return Math.max(0f, x);
+        }
+    },
+
+    LINEAR {
+        @Override
+        public float apply(float x) {
+            return x;
+        }
+    };
+
+    /**
+     * Applies the function.
+     *
+     * @param x the weighted sum of the inputs of a node
+     * @return the value of the node
+     */
+    public abstract float apply(float x);
+}
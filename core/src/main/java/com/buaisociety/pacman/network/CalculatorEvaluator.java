@@ -0,0 +1,71 @@
+package com.buaisociety.pacman.network;
+
+import com.cjcrafter.neat.Client;
+import com.cjcrafter.neat.compute.Calculator;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Supplier;
+
+/**
+ * Evaluates a network through a neat4j {@link Calculator}.
+ *
+ * <p>The calculator always returns a future and a new output array, so this
+ * evaluator joins the future right away and copies the outputs into place.
+ * This is the slow path; see {@link GenomeEvaluator} for networks that can be
+ * compiled.
+ */
+public final class CalculatorEvaluator implements NetworkEvaluator {
+
+    private final @NotNull Supplier<Calculator> calculator;
+    private final @NotNull float[] scratch;
+    private final int outputCount;
+
+    /**
+     * Creates an evaluator for the given client. The calculator is looked up
+     * on every call, so the evaluator keeps working after the client's genome
+     * changes.
+     *
+     * @param client      the client whose network to evaluate
+     * @param inputCount  the number of inputs of the network
+     * @param outputCount the number of outputs of the network
+     */
+    public CalculatorEvaluator(@NotNull Client client, int inputCount, int outputCount) {
+        this(client::getCalculator, inputCount, outputCount);
+    }
+
+    /**
+     * Creates an evaluator for a fixed calculator, e.g. one loaded from a
+     * file.
+     *
+     * @param calculator  the calculator to evaluate
+     * @param inputCount  the number of inputs of the network
+     * @param outputCount the number of outputs of the network
+     */
+    public CalculatorEvaluator(@NotNull Calculator calculator, int inputCount, int outputCount) {
+        this(() -> calculator, inputCount, outputCount);
+    }
+
+    private CalculatorEvaluator(@NotNull Supplier<Calculator> calculator, int inputCount, int outputCount) {
+        this.calculator = calculator;
+        this.scratch = new float[inputCount];
+        this.outputCount = outputCount;
+    }
+
+    @Override
+    public int getInputCount() {
+        return scratch.length;
+    }
+
+    @Override
+    public int getOutputCount() {
+        return outputCount;
+    }
+
+    @Override
+    public void evaluate(@NotNull float[] inputs, int inputOffset, @NotNull float[] outputs, int outputOffset) {
+        // The calculator only takes a whole array, so copy the row out first
+        System.arraycopy(inputs, inputOffset, scratch, 0, scratch.length);
+        float[] result = calculator.get().calculate(scratch).join();
+        System.arraycopy(result, 0, outputs, outputOffset, outputCount);
+    }
+}
@@ -0,0 +1,273 @@
+package com.buaisociety.pacman.network;
+
+import com.cjcrafter.neat.genome.ConnectionGene;
+import com.cjcrafter.neat.genome.Genome;
+import com.cjcrafter.neat.genome.NodeGene;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A feed-forward NEAT genome compiled into a flat program.
+ *
+ * <p>Every node gets a slot in a single value array: first the inputs, then
+ * the constant (bias) nodes, then the hidden and output nodes in topological
+ * order. Each computed node is a contiguous run of (source slot, weight)
+ * pairs, so evaluating the network is 2 nested loops over primitive arrays,
+ * with no maps, objects, futures or allocations. Disabled connections, and
+ * hidden nodes that cannot reach an output, are left out of the program.
+ *
+ * <p>Nodes are classified by their position, like neat4j lays them out:
+ * nodes at <code>x &lt;= 0.1</code> are inputs (in id order, any extra input
+ * node is a bias with the value 1), nodes at <code>x &gt;= 0.9</code> are
+ * outputs (in id order), and everything else is hidden. Since this mirrors
+ * the library rather than calling it, {@link GenomeEvaluator} checks every
+ * compiled network against the library's calculator before using it.
+ *
+ * <p>A compiled network owns its value array, so it is not thread-safe.
+ */
+public final class CompiledNetwork implements NetworkEvaluator {
+
+    private static final float INPUT_LAYER = 0.1f;
+    private static final float OUTPUT_LAYER = 0.9f;
+
+    private final int inputCount;
+    private final int outputCount;
+    private final int firstComputedSlot;
+    private final @NotNull Activation activation;
+    private final @NotNull int[] starts;  // per computed node, into sources/weights, plus 1 end
+    private final @NotNull int[] sources;
+    private final @NotNull float[] weights;
+    private final @NotNull int[] outputSlots;
+    private final @NotNull int[] slotNodeIds;
+    private final @NotNull float[] values;
+
+    private CompiledNetwork(int inputCount, int outputCount, int firstComputedSlot, @NotNull Activation activation,
+                            @NotNull int[] starts, @NotNull int[] sources, @NotNull float[] weights,
+                            @NotNull int[] outputSlots, @NotNull int[] slotNodeIds, @NotNull float[] values) {
+        this.inputCount = inputCount;
+        this.outputCount = outputCount;
+        this.firstComputedSlot = firstComputedSlot;
+        this.activation = activation;
+        this.starts = starts;
+        this.sources = sources;
+        this.weights = weights;
+        this.outputSlots = outputSlots;
+        this.slotNodeIds = slotNodeIds;
+        this.values = values;
+    }
+
+    /**
+     * Compiles the given genome.
+     *
+     * @param genome      the genome to compile
+     * @param inputCount  the number of inputs the network should have
+     * @param outputCount the number of outputs the network should have
+     * @param activation  the activation function of the hidden and output nodes
+     * @return the compiled network, or null if the genome does not have the
+     *         expected inputs and outputs, or is not feed-forward
+     */
+    public static @Nullable CompiledNetwork compile(@NotNull Genome genome, int inputCount, int outputCount, @NotNull Activation activation) {
+        List<NodeGene> inputNodes = new ArrayList<>();
+        List<NodeGene> outputNodes = new ArrayList<>();
+        Map<Integer, NodeGene> nodes = new HashMap<>();
+        for (NodeGene node : genome.getNodes()) {
+            nodes.put(node.getId(), node);
+            float x = node.getPosition().x();
+            if (x <= INPUT_LAYER)
+                inputNodes.add(node);
+            else if (x >= OUTPUT_LAYER)
+                outputNodes.add(node);
+        }
+        inputNodes.sort(Comparator.comparingInt(NodeGene::getId));
+        outputNodes.sort(Comparator.comparingInt(NodeGene::getId));
+        if (inputNodes.size() < inputCount || outputNodes.size() != outputCount)
+            return null;
+
+        // Incoming enabled connections of each node
+        Map<Integer, List<ConnectionGene>> incoming = new HashMap<>();
+        for (ConnectionGene connection : genome.getConnections()) {
+            if (!connection.getEnabled())
+                continue;
+            NodeGene to = nodes.get(connection.getToId());
+            if (to == null || !nodes.containsKey(connection.getFromId()))
+                continue;
+            if (to.getPosition().x() <= INPUT_LAYER)
+                return null;  // inputs are set from outside
+            incoming.computeIfAbsent(connection.getToId(), k -> new ArrayList<>()).add(connection);
+        }
+
+        // Only nodes that feed an output are live, walking backwards
+        Set<Integer> live = new HashSet<>();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (NodeGene output : outputNodes) {
+            live.add(output.getId());
+            queue.add(output.getId());
+        }
+        while (!queue.isEmpty()) {
+            for (ConnectionGene connection : incoming.getOrDefault(queue.poll(), List.of())) {
+                if (live.add(connection.getFromId()))
+                    queue.add(connection.getFromId());
+            }
+        }
+
+        // Topological order of the live computed nodes (Kahn), visiting nodes
+        // left to right so that the order is stable
+        List<NodeGene> computed = new ArrayList<>();
+        for (NodeGene node : nodes.values()) {
+            if (node.getPosition().x() > INPUT_LAYER && live.contains(node.getId()))
+                computed.add(node);
+        }
+        computed.sort(Comparator.comparingDouble((NodeGene node) -> node.getPosition().x()).thenComparingInt(NodeGene::getId));
+
+        Map<Integer, Integer> pending = new HashMap<>();
+        Map<Integer, List<Integer>> outgoing = new HashMap<>();
+        for (NodeGene node : computed) {
+            int count = 0;
+            for (ConnectionGene connection : incoming.getOrDefault(node.getId(), List.of())) {
+                NodeGene from = nodes.get(connection.getFromId());
+                if (from.getPosition().x() <= INPUT_LAYER)
+                    continue;
+                outgoing.computeIfAbsent(from.getId(), k -> new ArrayList<>()).add(node.getId());
+                count++;
+            }
+            pending.put(node.getId(), count);
+        }
+
+        List<NodeGene> order = new ArrayList<>(computed.size());
+        ArrayDeque<NodeGene> ready = new ArrayDeque<>();
+        for (NodeGene node : computed) {
+            if (pending.get(node.getId()) == 0)
+                ready.add(node);
+        }
+        while (!ready.isEmpty()) {
+            NodeGene node = ready.poll();
+            order.add(node);
+            for (int next : outgoing.getOrDefault(node.getId(), List.of())) {
+                if (pending.merge(next, -1, Integer::sum) == 0)
+                    ready.add(nodes.get(next));
+            }
+        }
+        if (order.size() != computed.size())
+            return null;  // recurrent
+
+        // Assign slots: inputs, constants, then the computed nodes in order
+        int firstComputedSlot = inputNodes.size();
+        int slotCount = firstComputedSlot + order.size();
+        int[] slotNodeIds = new int[slotCount];
+        float[] values = new float[slotCount];
+        Map<Integer, Integer> slots = new HashMap<>();
+        for (int i = 0; i < inputNodes.size(); i++) {
+            slots.put(inputNodes.get(i).getId(), i);
+            slotNodeIds[i] = inputNodes.get(i).getId();
+            if (i >= inputCount)
+                values[i] = 1f;  // bias
+        }
+        for (int i = 0; i < order.size(); i++) {
+            slots.put(order.get(i).getId(), firstComputedSlot + i);
+            slotNodeIds[firstComputedSlot + i] = order.get(i).getId();
+        }
+
+        int connectionCount = 0;
+        for (NodeGene node : order) {
+            connectionCount += incoming.getOrDefault(node.getId(), List.of()).size();
+        }
+        int[] starts = new int[order.size() + 1];
+        int[] sources = new int[connectionCount];
+        float[] weights = new float[connectionCount];
+        int c = 0;
+        for (int i = 0; i < order.size(); i++) {
+            starts[i] = c;
+            for (ConnectionGene connection : incoming.getOrDefault(order.get(i).getId(), List.of())) {
+                sources[c] = slots.get(connection.getFromId());
+                weights[c] = connection.getWeight();
+                c++;
+            }
+        }
+        starts[order.size()] = c;
+
+        int[] outputSlots = new int[outputCount];
+        for (int i = 0; i < outputCount; i++) {
+            outputSlots[i] = slots.get(outputNodes.get(i).getId());
+        }
+
+        return new CompiledNetwork(inputCount, outputCount, firstComputedSlot, activation,
+            starts, sources, weights, outputSlots, slotNodeIds, values);
+    }
+
+    /**
+     * Returns a network that runs the same program with its own values, so
+     * that another thread can evaluate it. The program itself is shared,
+     * since it is never modified.
+     *
+     * @return a copy of this network
+     */
+    public @NotNull CompiledNetwork copy() {
+        return new CompiledNetwork(inputCount, outputCount, firstComputedSlot, activation,
+            starts, sources, weights, outputSlots, slotNodeIds, values.clone());
+    }
+
+    @Override
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    @Override
+    public int getOutputCount() {
+        return outputCount;
+    }
+
+    /**
+     * Returns the number of connections left in the program.
+     *
+     * @return the number of connections
+     */
+    public int getConnectionCount() {
+        return weights.length;
+    }
+
+    @Override
+    public void evaluate(@NotNull float[] inputs, int inputOffset, @NotNull float[] outputs, int outputOffset) {
+        float[] values = this.values;
+        int[] starts = this.starts;
+        int[] sources = this.sources;
+        float[] weights = this.weights;
+        System.arraycopy(inputs, inputOffset, values, 0, inputCount);
+
+        int slot = firstComputedSlot;
+        for (int node = 0; node < starts.length - 1; node++) {
+            float sum = 0f;
+            for (int c = starts[node]; c < starts[node + 1]; c++) {
+                sum += weights[c] * values[sources[c]];
+            }
+            values[slot++] = activation.apply(sum);
+        }
+
+        for (int i = 0; i < outputCount; i++) {
+            outputs[outputOffset + i] = values[outputSlots[i]];
+        }
+    }
+
+    /**
+     * Returns the value the node had during the last evaluation, or 0 for a
+     * node that was compiled away.
+     *
+     * @param nodeId the id of the node
+     * @return the value of the node
+     */
+    public float getActivation(int nodeId) {
+        for (int slot = 0; slot < slotNodeIds.length; slot++) {
+            if (slotNodeIds[slot] == nodeId)
+                return values[slot];
+        }
+        return 0f;
+    }
+}
@@ -0,0 +1,170 @@
+package com.buaisociety.pacman.network;
+
+import com.buaisociety.pacman.util.GameRandom;
+import com.cjcrafter.neat.Client;
+import com.cjcrafter.neat.compute.Calculator;
+import com.cjcrafter.neat.genome.Genome;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Evaluates the network of a NEAT {@link Client} with a
+ * {@link CompiledNetwork}, falling back to the client's calculator when the
+ * genome cannot be compiled.
+ *
+ * <p>The genome is compiled on the first evaluation, and again after
+ * {@link #invalidate()} or when the client gets a different genome object.
+ * Since mutations may change the weights of the same genome object, whoever
+ * evolves the population must call {@link #invalidate()} afterwards.
+ *
+ * <p>Each compiled network is checked against the calculator on a few probe
+ * inputs (values 0-4, like the pacman sensors) before it is used. If the
+ * outputs disagree, e.g. because the library uses another activation
+ * function, the calculator is used instead, so a compiled network never
+ * changes the behavior of a genome.
+ */
+public final class GenomeEvaluator implements NetworkEvaluator {
+
+    private static final int PROBES = 8;
+    private static final float TOLERANCE = 1e-4f;
+    private static final AtomicBoolean warned = new AtomicBoolean();
+
+    private final @NotNull Client client;
+    private final int inputCount;
+    private final int outputCount;
+    private final @NotNull Activation activation;
+    private final @NotNull CalculatorEvaluator fallback;
+
+    private @Nullable Genome compiledGenome;
+    private @Nullable CompiledNetwork compiled;
+
+    public GenomeEvaluator(@NotNull Client client, int inputCount, int outputCount) {
+        this(client, inputCount, outputCount, Activation.SIGMOID);
+    }
+
+    /**
+     * Creates an evaluator for the network of the given client.
+     *
+     * @param client      the client whose network to evaluate
+     * @param inputCount  the number of inputs of the network
+     * @param outputCount the number of outputs of the network
+     * @param activation  the activation function neat4j is configured with
+     */
+    public GenomeEvaluator(@NotNull Client client, int inputCount, int outputCount, @NotNull Activation activation) {
+        this.client = client;
+        this.inputCount = inputCount;
+        this.outputCount = outputCount;
+        this.activation = activation;
+        this.fallback = new CalculatorEvaluator(client, inputCount, outputCount);
+    }
+
+    public @NotNull Client getClient() {
+        return client;
+    }
+
+    @Override
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    @Override
+    public int getOutputCount() {
+        return outputCount;
+    }
+
+    /**
+     * Forgets the compiled network, so the genome is compiled again before
+     * the next evaluation. Call this whenever the genome may have mutated.
+     */
+    public void invalidate() {
+        compiledGenome = null;
+        compiled = null;
+    }
+
+    /**
+     * Returns true if the current genome runs as a compiled network, and
+     * false if it falls back to the calculator. Compiles the genome if
+     * needed.
+     *
+     * @return true if the genome is compiled
+     */
+    public boolean isCompiled() {
+        return getCompiled() != null;
+    }
+
+    /**
+     * Compiles the genome now if needed, instead of on the first evaluation.
+     */
+    public void compile() {
+        getCompiled();
+    }
+
+    /**
+     * Returns the compiled network of the current genome, after it was
+     * checked against the calculator, or null if the genome falls back to the
+     * calculator. Compiles the genome if needed.
+     *
+     * @return the compiled network, or null
+     */
+    public @Nullable CompiledNetwork getCompiledNetwork() {
+        return getCompiled();
+    }
+
+    @Override
+    public void evaluate(@NotNull float[] inputs, int inputOffset, @NotNull float[] outputs, int outputOffset) {
+        CompiledNetwork compiled = getCompiled();
+        if (compiled != null)
+            compiled.evaluate(inputs, inputOffset, outputs, outputOffset);
+        else
+            fallback.evaluate(inputs, inputOffset, outputs, outputOffset);
+    }
+
+    /**
+     * Returns the value the node had during the last evaluation, for
+     * rendering the network.
+     *
+     * @param nodeId the id of the node
+     * @return the value of the node
+     */
+    public float getActivation(int nodeId) {
+        CompiledNetwork compiled = this.compiled;
+        return compiled != null ? compiled.getActivation(nodeId) : client.getCalculator().getActivation(nodeId);
+    }
+
+    private @Nullable CompiledNetwork getCompiled() {
+        Genome genome = client.getGenome();
+        if (genome != compiledGenome) {
+            compiledGenome = genome;
+            compiled = CompiledNetwork.compile(genome, inputCount, outputCount, activation);
+            if (compiled != null && !matchesCalculator(compiled)) {
+                compiled = null;
+                if (!warned.getAndSet(true))
+                    System.err.println("Compiled networks do not match the neat4j calculator, is the activation " + activation + " correct? Using the calculator instead");
+            }
+        }
+        return compiled;
+    }
+
+    private boolean matchesCalculator(@NotNull CompiledNetwork compiled) {
+        Calculator calculator = client.getCalculator();
+        GameRandom random = new GameRandom(inputCount * 31L + outputCount);
+        float[] inputs = new float[inputCount];
+        float[] outputs = new float[outputCount];
+
+        for (int probe = 0; probe < PROBES; probe++) {
+            for (int i = 0; i < inputCount; i++) {
+                inputs[i] = probe == 0 ? 0f : random.nextInt(5);
+            }
+
+            compiled.evaluate(inputs, 0, outputs, 0);
+            float[] expected = calculator.calculate(inputs.clone()).join();
+            for (int i = 0; i < outputCount; i++) {
+                if (Math.abs(outputs[i] - expected[i]) > TOLERANCE * Math.max(1f, Math.abs(expected[i])))
+                    return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,188 @@
+package com.buaisociety.pacman.network;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Preallocated input and output matrices for evaluating the networks of many
+ * games together, 1 row per game.
+ *
+ * <p>Each tick is split into 3 stages by the {@link com.buaisociety.pacman.SimulationWorkers}:
+ * <ol>
+ *     <li>{@link #prepare(int)}: the {@link Source} of each row writes its
+ *     sensor values into its row of the input matrix.</li>
+ *     <li>{@link #evaluate(int)}: the network of each prepared row is
+ *     evaluated, writing into the same row of the output matrix.</li>
+ *     <li>The games are updated, and each source {@link #consume(int) consumes}
+ *     the outputs of its row instead of evaluating its network itself.</li>
+ * </ol>
+ *
+ * <p>Rows are independent, so different threads may work on different rows
+ * at the same time. A single row must only be used by 1 thread at a time,
+ * normally the thread stepping that row's game.
+ */
+public final class InferenceBatch {
+
+    private static final byte EMPTY = 0;
+    private static final byte PREPARED = 1;
+    private static final byte EVALUATED = 2;
+
+    private final int rows;
+    private final int inputCount;
+    private final int outputCount;
+    private final @NotNull float[] inputs;
+    private final @NotNull float[] outputs;
+    private final @NotNull Source[] sources;
+    private final @NotNull NetworkEvaluator[] evaluators;
+    private final @NotNull byte[] states;
+
+    /**
+     * Creates a batch with room for the given number of rows.
+     *
+     * @param rows        the number of rows, usually the number of games
+     * @param inputCount  the number of inputs per row
+     * @param outputCount the number of outputs per row
+     */
+    public InferenceBatch(int rows, int inputCount, int outputCount) {
+        if (rows < 1 || inputCount < 1 || outputCount < 1)
+            throw new IllegalArgumentException("Invalid batch size " + rows + "x" + inputCount + "->" + outputCount);
+
+        this.rows = rows;
+        this.inputCount = inputCount;
+        this.outputCount = outputCount;
+        this.inputs = new float[rows * inputCount];
+        this.outputs = new float[rows * outputCount];
+        this.sources = new Source[rows];
+        this.evaluators = new NetworkEvaluator[rows];
+        this.states = new byte[rows];
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    public int getOutputCount() {
+        return outputCount;
+    }
+
+    /**
+     * Assigns a row to a source and the network that evaluates it, replacing
+     * whatever used the row before.
+     *
+     * @param row       the row
+     * @param source    the source that writes the inputs of the row
+     * @param evaluator the network to evaluate the row with
+     * @throws IllegalArgumentException if the network does not match the batch
+     */
+    public void bind(int row, @NotNull Source source, @NotNull NetworkEvaluator evaluator) {
+        if (evaluator.getInputCount() != inputCount || evaluator.getOutputCount() != outputCount)
+            throw new IllegalArgumentException("Expected a network with " + inputCount + " inputs and " + outputCount
+                + " outputs, got " + evaluator.getInputCount() + " and " + evaluator.getOutputCount());
+
+        sources[row] = source;
+        evaluators[row] = evaluator;
+        states[row] = EMPTY;
+    }
+
+    /**
+     * Asks the source of the row to write its inputs. Rows without a source,
+     * or whose source cannot sense yet, are left empty.
+     *
+     * @param row the row
+     * @return true if the row was prepared
+     */
+    public boolean prepare(int row) {
+        Source source = sources[row];
+        boolean prepared = source != null && source.writeInputs(inputs, row * inputCount);
+        states[row] = prepared ? PREPARED : EMPTY;
+        return prepared;
+    }
+
+    /**
+     * Evaluates the network of the row, if the row was prepared.
+     *
+     * @param row the row
+     */
+    public void evaluate(int row) {
+        if (states[row] != PREPARED)
+            return;
+
+        evaluators[row].evaluate(inputs, row * inputCount, outputs, row * outputCount);
+        states[row] = EVALUATED;
+    }
+
+    /**
+     * Evaluates every prepared row in <code>[from, to)</code>.
+     *
+     * @param from the first row, inclusive
+     * @param to   the last row, exclusive
+     */
+    public void evaluate(int from, int to) {
+        for (int row = from; row < to; row++) {
+            evaluate(row);
+        }
+    }
+
+    /**
+     * Returns true if the row holds outputs that were not consumed yet, and
+     * marks them as consumed. The outputs can then be read from
+     * {@link #getOutputs()} at {@link #getOutputOffset(int)}.
+     *
+     * @param row the row
+     * @return true if the row had fresh outputs
+     */
+    public boolean consume(int row) {
+        if (states[row] != EVALUATED)
+            return false;
+
+        states[row] = EMPTY;
+        return true;
+    }
+
+    /**
+     * Returns the input matrix, with {@link #getInputCount()} values per row.
+     *
+     * @return the input matrix
+     */
+    public @NotNull float[] getInputs() {
+        return inputs;
+    }
+
+    /**
+     * Returns the output matrix, with {@link #getOutputCount()} values per
+     * row.
+     *
+     * @return the output matrix
+     */
+    public @NotNull float[] getOutputs() {
+        return outputs;
+    }
+
+    public int getInputOffset(int row) {
+        return row * inputCount;
+    }
+
+    public int getOutputOffset(int row) {
+        return row * outputCount;
+    }
+
+    /**
+     * Writes the sensor values of 1 row, e.g. a pacman behavior.
+     */
+    @FunctionalInterface
+    public interface Source {
+
+        /**
+         * Writes {@link InferenceBatch#getInputCount()} inputs starting at
+         * <code>inputs[offset]</code>.
+         *
+         * @param inputs the input matrix
+         * @param offset the index of the first input of the row
+         * @return false if there is nothing to sense yet
+         */
+        boolean writeInputs(@NotNull float[] inputs, int offset);
+    }
+}
@@ -0,0 +1,40 @@
+package com.buaisociety.pacman.network;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Computes the outputs of a neural network from its inputs, synchronously.
+ *
+ * <p>Inputs and outputs are read from and written to slices of caller-owned
+ * arrays, so an evaluator can work directly on a row of an
+ * {@link InferenceBatch} without creating any arrays or futures. An evaluator
+ * is used by 1 thread at a time.
+ */
+public interface NetworkEvaluator {
+
+    /**
+     * Returns the number of inputs the network reads.
+     *
+     * @return the number of inputs
+     */
+    int getInputCount();
+
+    /**
+     * Returns the number of outputs the network writes.
+     *
+     * @return the number of outputs
+     */
+    int getOutputCount();
+
+    /**
+     * Evaluates the network. Reads {@link #getInputCount()} values starting at
+     * <code>inputs[inputOffset]</code>, and writes {@link #getOutputCount()}
+     * values starting at <code>outputs[outputOffset]</code>.
+     *
+     * @param inputs       the array holding the inputs
+     * @param inputOffset  the index of the first input
+     * @param outputs      the array to write the outputs to
+     * @param outputOffset the index of the first output
+     */
+    void evaluate(@NotNull float[] inputs, int inputOffset, @NotNull float[] outputs, int outputOffset);
+}
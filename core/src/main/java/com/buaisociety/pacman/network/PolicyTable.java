@@ -0,0 +1,154 @@
+package com.buaisociety.pacman.network;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Replaces a network whose inputs are all small whole numbers by a lookup
+ * table of its decisions.
+ *
+ * <p>Input <code>i</code> may take the values <code>0</code> to
+ * <code>cardinalities[i] - 1</code>, so the whole input space has the product
+ * of the cardinalities as its size (e.g. 800 combinations for the pacman
+ * sensors). The first time the table is used (and after every
+ * {@link #invalidate()}), the network is evaluated once for every
+ * combination, and the index of its largest output is stored. After that,
+ * evaluating the network is 1 array read.
+ *
+ * <p>Only the choice is kept, not the output values: {@link #evaluate} writes
+ * a 1 for the largest output and 0 for the others, which is all a behavior
+ * picking the largest output needs. If an input is not one of its expected
+ * values, the network is evaluated normally instead.
+ *
+ * <p>Like the network it wraps, a table is not thread-safe.
+ */
+public final class PolicyTable implements NetworkEvaluator {
+
+    // Building evaluates the network this many times at most
+    private static final int MAX_SIZE = 1 << 16;
+
+    private final @NotNull NetworkEvaluator network;
+    private final @NotNull int[] cardinalities;
+    private final @NotNull byte[] choices;
+    private final @NotNull float[] scratchInputs;
+    private final @NotNull float[] scratchOutputs;
+    private boolean built;
+
+    /**
+     * Creates a table for the given network. The table is built when it is
+     * first used.
+     *
+     * @param network       the network to tabulate
+     * @param cardinalities the number of values each input can take
+     * @throws IllegalArgumentException if there is not 1 cardinality per
+     *                                  input, or the table would be too large
+     */
+    public PolicyTable(@NotNull NetworkEvaluator network, @NotNull int[] cardinalities) {
+        if (cardinalities.length != network.getInputCount())
+            throw new IllegalArgumentException("Expected " + network.getInputCount() + " cardinalities, got " + cardinalities.length);
+        if (network.getOutputCount() > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("Too many outputs: " + network.getOutputCount());
+
+        long size = 1;
+        for (int cardinality : cardinalities) {
+            if (cardinality < 1)
+                throw new IllegalArgumentException("Invalid cardinality " + cardinality);
+            size *= cardinality;
+            if (size > MAX_SIZE)
+                throw new IllegalArgumentException("Input space is larger than " + MAX_SIZE);
+        }
+
+        this.network = network;
+        this.cardinalities = cardinalities.clone();
+        this.choices = new byte[(int) size];
+        this.scratchInputs = new float[network.getInputCount()];
+        this.scratchOutputs = new float[network.getOutputCount()];
+    }
+
+    @Override
+    public int getInputCount() {
+        return network.getInputCount();
+    }
+
+    @Override
+    public int getOutputCount() {
+        return network.getOutputCount();
+    }
+
+    /**
+     * Returns the number of input combinations in the table.
+     *
+     * @return the size of the table
+     */
+    public int getSize() {
+        return choices.length;
+    }
+
+    /**
+     * Marks the table as outdated, so it is built again the next time it is
+     * used. Call this whenever the network changes.
+     */
+    public void invalidate() {
+        built = false;
+    }
+
+    /**
+     * Returns the index of the largest output of the network for the given
+     * inputs, or -1 if the inputs are not in the table.
+     *
+     * @param inputs the array holding the inputs
+     * @param offset the index of the first input
+     * @return the chosen output, or -1
+     */
+    public int getChoice(@NotNull float[] inputs, int offset) {
+        int index = 0;
+        for (int i = 0; i < cardinalities.length; i++) {
+            float value = inputs[offset + i];
+            int digit = (int) value;
+            if (digit != value || digit < 0 || digit >= cardinalities[i])
+                return -1;
+            index = index * cardinalities[i] + digit;
+        }
+
+        if (!built)
+            build();
+        return choices[index];
+    }
+
+    @Override
+    public void evaluate(@NotNull float[] inputs, int inputOffset, @NotNull float[] outputs, int outputOffset) {
+        int choice = getChoice(inputs, inputOffset);
+        if (choice == -1) {
+            network.evaluate(inputs, inputOffset, outputs, outputOffset);
+            return;
+        }
+
+        for (int i = 0; i < scratchOutputs.length; i++) {
+            outputs[outputOffset + i] = i == choice ? 1f : 0f;
+        }
+    }
+
+    /**
+     * Builds the table now, instead of when it is first used. Once built, the
+     * table is only read, so it can be built on 1 thread and then used on
+     * another, as long as the hand-off is synchronized.
+     */
+    public void build() {
+        for (int index = 0; index < choices.length; index++) {
+            // Decode the index, last input varying fastest
+            int rest = index;
+            for (int i = cardinalities.length - 1; i >= 0; i--) {
+                scratchInputs[i] = rest % cardinalities[i];
+                rest /= cardinalities[i];
+            }
+
+            network.evaluate(scratchInputs, 0, scratchOutputs, 0);
+            int best = 0;
+            for (int i = 1; i < scratchOutputs.length; i++) {
+                if (scratchOutputs[i] > scratchOutputs[best])
+                    best = i;
+            }
+            choices[index] = (byte) best;
+        }
+        built = true;
+    }
+}
@@ -0,0 +1,60 @@
+package com.buaisociety.pacman.util;
+
+import com.badlogic.gdx.Gdx;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads files from the <code>./assets</code> directory.
+ *
+ * <p>When a libGDX backend is running, files are resolved through
+ * {@link Gdx#files}. Headless simulations (no backend, no OpenGL context)
+ * resolve the same paths relative to the working directory, which is the
+ * <code>./assets</code> directory when launched through gradle.
+ */
+public final class Assets {
+
+    private Assets() {
+    }
+
+    /**
+     * Returns true if a libGDX backend is running, e.g. textures and shaders
+     * may be created.
+     *
+     * @return true if a libGDX backend is running
+     */
+    public static boolean hasBackend() {
+        return Gdx.files != null;
+    }
+
+    /**
+     * Opens a stream to read the given internal asset.
+     *
+     * @param path the path of the asset, relative to the assets directory
+     * @return the stream to read the asset from
+     * @throws IOException if the asset cannot be opened
+     */
+    public static @NotNull InputStream read(@NotNull String path) throws IOException {
+        if (hasBackend())
+            return Gdx.files.internal(path).read();
+        return Files.newInputStream(Path.of(path));
+    }
+
+    /**
+     * Reads the given internal asset as a UTF-8 string.
+     *
+     * @param path the path of the asset, relative to the assets directory
+     * @return the contents of the asset
+     * @throws IOException if the asset cannot be read
+     */
+    public static @NotNull String readString(@NotNull String path) throws IOException {
+        try (InputStream stream = read(path)) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -5,8 +5,8 @@ import org.jetbrains.annotations.NotNull;
 /**
  * Represents an event listener that listens to events of type {@link T}.
  *
- * <p>Note that an event listener has no control over the order in which it is
- * called.
+ * <p>Listeners are called in the order they were registered to the
+ * {@link EventSystem}.
  *
  * @param <T> the type of event this listener listens to.
  */
@@ -1,27 +1,87 @@
 package com.buaisociety.pacman.util;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents an event system that can be used to listen to events.
+ *
+ * <p>A listener registered for an event class is also called for every
+ * subclass of that event, e.g. a listener for <code>PacmanEvent</code>
+ * receives every game event. Listeners are called in the order they were
+ * registered.
+ *
+ * <p>Registering and unregistering listeners is synchronized and rare, while
+ * firing events is frequent. So for every fired event type, the matching
+ * listeners are resolved once into an array, and these arrays are replaced
+ * (copy-on-write) whenever the listeners change. Firing an event is then a
+ * lookup in an immutable map and a loop over an array.
+ *
+ * <p>An event system may have a parent. Every event fired is passed on to the
+ * parent after the local listeners, so each game can own a local event
+ * system while shared listeners are registered once on the parent. Only the
+ * game's own thread touches its local listeners, and the parent is only read
+ * when firing.
  */
 public class EventSystem {
 
-    private final Map<Class<? extends Event>, Set<EventListener<?>>> listeners = new ConcurrentHashMap<>();
+    private static final EventListener<?>[] NO_LISTENERS = new EventListener<?>[0];
+
+    private final @Nullable EventSystem parent;
+
+    // In the order they were registered, guarded by this
+    private final List<Registration> registrations = new ArrayList<>();
+
+    // Resolved listeners per fired event type, replaced on every change
+    private volatile Map<Class<?>, EventListener<?>[]> resolved = Collections.emptyMap();
+
+    /**
+     * Creates an event system without a parent.
+     */
+    public EventSystem() {
+        this(null);
+    }
+
+    /**
+     * Creates an event system that passes every event it fires on to
+     * <code>parent</code>.
+     *
+     * @param parent the event system to pass events on to, or null.
+     */
+    public EventSystem(@Nullable EventSystem parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Returns the event system that events are passed on to, if any.
+     *
+     * @return the parent event system, or null.
+     */
+    public @Nullable EventSystem getParent() {
+        return parent;
+    }
 
     /**
-     * Adds a listener to be called when the <code>eventClass</code> event is fired.
+     * Adds a listener to be called when the <code>eventClass</code> event (or
+     * any subclass of it) is fired. Registering the same listener for the same
+     * class twice does nothing.
      *
      * @param eventClass the class of the event to listen to.
      * @param listener the listener to call when the event is fired.
      * @param <T> the type of event to listen to.
      */
-    public <T extends Event> void registerListener(@NotNull Class<T> eventClass, @NotNull EventListener<T> listener) {
-        listeners.computeIfAbsent(eventClass, k -> ConcurrentHashMap.newKeySet()).add(listener);
+    public synchronized <T extends Event> void registerListener(@NotNull Class<T> eventClass, @NotNull EventListener<T> listener) {
+        if (indexOf(eventClass, listener) != -1)
+            return;
+
+        registrations.add(new Registration(eventClass, listener));
+        resolved = Collections.emptyMap();
     }
 
     /**
@@ -32,18 +92,34 @@ public class EventSystem {
      * @param listener the listener to remove.
      * @param <T> the type of event to stop listening to.
      */
-    public <T extends Event> void unregisterListener(@NotNull Class<T> eventClass, @NotNull EventListener<T> listener) {
-        Set<EventListener<?>> listeners = this.listeners.get(eventClass);
-        if (listeners != null) {
-            listeners.remove(listener);
-        }
+    public synchronized <T extends Event> void unregisterListener(@NotNull Class<T> eventClass, @NotNull EventListener<T> listener) {
+        int index = indexOf(eventClass, listener);
+        if (index == -1)
+            return;
+
+        registrations.remove(index);
+        resolved = Collections.emptyMap();
     }
 
     /**
-     * Removes all listeners from the event system.
+     * Removes all listeners from the event system. The listeners of the
+     * parent are not affected.
      */
-    public void unregisterAllListeners() {
-        this.listeners.clear();
+    public synchronized void unregisterAllListeners() {
+        registrations.clear();
+        resolved = Collections.emptyMap();
+    }
+
+    /**
+     * Returns true if at least 1 listener (here or in a parent) would be
+     * called for an event of the given class. Events that are fired often can
+     * check this first, to avoid creating the event when nobody is listening.
+     *
+     * @param eventClass the class of the event.
+     * @return true if the event has listeners.
+     */
+    public boolean hasListeners(@NotNull Class<? extends Event> eventClass) {
+        return getListeners(eventClass).length != 0 || (parent != null && parent.hasListeners(eventClass));
     }
 
     /**
@@ -54,10 +130,7 @@ public class EventSystem {
      * @param <T> the type of event to fire.
      */
     public <T extends Event> @NotNull T fireEvent(@NotNull T event) {
-        Set<EventListener<?>> listeners = this.listeners.get(event.getClass());
-        if (listeners == null)
-            return event;
-
+        EventListener<?>[] listeners = getListeners(event.getClass());
         for (EventListener<?> listener : listeners) {
             try {
                 //noinspection unchecked
@@ -68,6 +141,51 @@ public class EventSystem {
             }
         }
 
+        if (parent != null)
+            parent.fireEvent(event);
         return event;
     }
+
+    private @NotNull EventListener<?>[] getListeners(@NotNull Class<?> eventType) {
+        EventListener<?>[] listeners = resolved.get(eventType);
+        return listeners != null ? listeners : resolve(eventType);
+    }
+
+    private synchronized @NotNull EventListener<?>[] resolve(@NotNull Class<?> eventType) {
+        Map<Class<?>, EventListener<?>[]> current = resolved;
+        EventListener<?>[] listeners = current.get(eventType);
+        if (listeners != null)
+            return listeners;
+
+        List<EventListener<?>> matching = new ArrayList<>();
+        for (Registration registration : registrations) {
+            if (registration.eventClass.isAssignableFrom(eventType))
+                matching.add(registration.listener);
+        }
+        listeners = matching.isEmpty() ? NO_LISTENERS : matching.toArray(NO_LISTENERS);
+
+        Map<Class<?>, EventListener<?>[]> copy = new HashMap<>(current);
+        copy.put(eventType, listeners);
+        resolved = copy;
+        return listeners;
+    }
+
+    private int indexOf(@NotNull Class<?> eventClass, @NotNull EventListener<?> listener) {
+        for (int i = 0; i < registrations.size(); i++) {
+            Registration registration = registrations.get(i);
+            if (registration.eventClass == eventClass && registration.listener.equals(listener))
+                return i;
+        }
+        return -1;
+    }
+
+    private static final class Registration {
+        private final @NotNull Class<?> eventClass;
+        private final @NotNull EventListener<?> listener;
+
+        private Registration(@NotNull Class<?> eventClass, @NotNull EventListener<?> listener) {
+            this.eventClass = eventClass;
+            this.listener = listener;
+        }
+    }
 }
@@ -0,0 +1,75 @@
+package com.buaisociety.pacman.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A small, fast, seedable random number generator (SplitMix64) used for every
+ * random decision in a game. Each game owns its own generator, so the outcome
+ * of a game only depends on its seed and the decisions of the player, not on
+ * the thread it runs on.
+ *
+ * <p>Unlike {@link java.util.SplittableRandom}, the state of the generator can
+ * be read and restored with {@link #getState()} and {@link #setState(long)}.
+ * This class is not thread-safe, like the games that use it.
+ */
+public final class GameRandom implements RandomGenerator {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+
+    /**
+     * Creates a generator with the given seed. The same seed always produces
+     * the same sequence of numbers.
+     *
+     * @param seed the seed
+     */
+    public GameRandom(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * Returns the current state of the generator, which can be passed to
+     * {@link #setState(long)} to repeat the following numbers.
+     *
+     * @return the current state
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Restores a state returned by {@link #getState()}.
+     *
+     * @param state the state to restore
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+
+    /**
+     * Creates a new generator seeded from this one. Useful to give an
+     * independent stream to a consumer, so that it does not shift the numbers
+     * seen by everything else.
+     *
+     * @return a new generator
+     */
+    public @NotNull GameRandom split() {
+        return new GameRandom(nextLong());
+    }
+
+    @Override
+    public long nextLong() {
+        long z = (state += GOLDEN_GAMMA);
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+}
@@ -5,9 +5,32 @@ import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
 import com.buaisociety.pacman.Main;
 import com.buaisociety.pacman.Tournament;
 
+import java.util.Arrays;
+
 /** Launches the desktop (LWJGL3) application. */
 public class Lwjgl3Launcher {
     public static void main(String[] args) {
+        // Score the tournament behavior over many games, without a window.
+        // Checked before --headless, so "--evaluate --headless" evaluates.
+        int evaluate = Arrays.asList(args).indexOf("--evaluate");
+        if (evaluate != -1) {
+            // The number of episodes is optional
+            boolean hasEpisodes = evaluate + 1 < args.length && args[evaluate + 1].matches("\\d{1,9}");
+            int episodes = hasEpisodes ? Integer.parseInt(args[evaluate + 1]) : 32;
+            if (episodes < 1) {
+                System.err.println("--evaluate needs at least 1 episode, got " + episodes);
+                return;
+            }
+            new Tournament().evaluateHeadless(episodes);
+            return;
+        }
+
+        // Training without a window does not need any libGDX backend
+        if (Arrays.asList(args).contains("--headless")) {
+            new Main().runHeadless();
+            return;
+        }
+
         if (StartupHelper.startNewJvmIfRequired()) return; // This handles macOS support and helps on Windows.
         createApplication();
     }